@@ -0,0 +1,34 @@
+#!/bin/sh
+# Launches Circle the Dot with an application class-data-sharing (AppCDS) archive.
+#
+# The first run records the classes loaded by the game into the archive when the game
+# exits (Java 13 or later); the following runs map them from the archive instead of
+# loading and verifying them again, which shortens the time to the first paint.
+# Archives only accept classes from jars, so the compiled classes are packed into a jar
+# first; the jar and the archive are rebuilt when the classes change. Older JVMs run the
+# game without an archive.
+#
+# Usage: ./circle-the-dot.sh [arguments of CircleTheDot]
+#   CLASSES      directory of the compiled game, out/production/AssignmentThree by default
+#   GAME_JAR     the jar of the game, circle-the-dot.jar by default
+#   CDS_ARCHIVE  the archive, circle-the-dot.jsa by default
+#   JAVA         the java command, java by default
+
+CLASSES=${CLASSES:-out/production/AssignmentThree}
+GAME_JAR=${GAME_JAR:-circle-the-dot.jar}
+CDS_ARCHIVE=${CDS_ARCHIVE:-circle-the-dot.jsa}
+JAVA=${JAVA:-java}
+
+if [ ! -f "$GAME_JAR" ] || [ -n "$(find "$CLASSES" -newer "$GAME_JAR" -type f | head -n 1)" ]; then
+    jar cf "$GAME_JAR" -C "$CLASSES" . || exit 1
+    rm -f "$CDS_ARCHIVE"
+fi
+
+if [ -f "$CDS_ARCHIVE" ]; then
+    exec "$JAVA" -XX:SharedArchiveFile="$CDS_ARCHIVE" -Xshare:auto -cp "$GAME_JAR" \
+        CircleTheDot "$@"
+fi
+if "$JAVA" -XX:+PrintFlagsFinal -version 2>/dev/null | grep -q ArchiveClassesAtExit; then
+    exec "$JAVA" -XX:ArchiveClassesAtExit="$CDS_ARCHIVE" -cp "$GAME_JAR" CircleTheDot "$@"
+fi
+exec "$JAVA" -cp "$GAME_JAR" CircleTheDot "$@"
@@ -0,0 +1,129 @@
+import java.util.Random;
+
+/**
+ * The class <b>BfsDotStrategy</b> is the original behaviour of the blue dot: a
+ * ``breadth-first'' search from the dot finds one of the shortest paths to the border,
+ * ties being broken at random.
+ */
+public class BfsDotStrategy implements DotStrategy {
+
+    public static final String NAME = "bfs";
+
+    /**
+     * Buffers of the breadth-first search, reused from one move to the next
+     */
+    private boolean[] blocked;
+    private int[] queue;
+    private int[] origin;
+    private final int[] candidates = new int[Cells.MAX_NEIGHBOURS];
+    private final int[] neighbours = new int[Cells.MAX_NEIGHBOURS];
+
+    /**
+     * Source of randomness used to choose between equally short paths
+     */
+    private final Random generator;
+
+    /**
+     * Constructor
+     *
+     * @param generator the source of randomness used to break ties
+     */
+    public BfsDotStrategy(Random generator) {
+        this.generator = generator;
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Does a ``breadth-first'' search from the current location of the blue dot to find
+     * one of the shortest available path to exit the board. Cells are handled as int
+     * indices (see Cells) and the search buffers are reused from one call to the next,
+     * so the search does not allocate.
+     */
+    public int nextMove(GameModel model, long deadline) {
+        int size = model.getSize();
+        ensureBuffers(size * size);
+        DotStrategies.fillBlocked(model, blocked);
+
+        // start with neighbours of the current dot
+        // (note: we know the current dot isn't on the border)
+        int count = possibleNeighbours(model.getCurrentDotCell(), size);
+
+        // adding some non determinism into the game !
+        for (int i = count - 1; i > 0; i--) {
+            int k = generator.nextInt(i + 1);
+            int swap = neighbours[i];
+            neighbours[i] = neighbours[k];
+            neighbours[k] = swap;
+        }
+
+        int rear = 0;
+        for (int i = 0; i < count; i++) {
+            int p = neighbours[i];
+            if (Cells.isOnBorder(p, size)) {
+                return p;
+            }
+            queue[rear] = p;
+            origin[rear] = p;
+            rear++;
+            blocked[p] = true;
+        }
+
+        // start the search
+        int front = 0;
+        while (front < rear) {
+            int cell = queue[front];
+            int first = origin[front];
+            front++;
+            count = possibleNeighbours(cell, size);
+
+            for (int i = 0; i < count; i++) {
+                int p = neighbours[i];
+                if (Cells.isOnBorder(p, size)) {
+                    return first;
+                }
+                queue[rear] = p;
+                origin[rear] = first;
+                rear++;
+                blocked[p] = true;
+            }
+        }
+
+        // could not find a way out.
+        return Cells.NONE;
+    }
+
+    /**
+     * Helper method: (re)allocates the search buffers if the board has grown
+     *
+     * @param cells the number of cells of the board
+     */
+    private void ensureBuffers(int cells) {
+        if (blocked == null || blocked.length != cells) {
+            blocked = new boolean[cells];
+            queue = new int[cells];
+            origin = new int[cells];
+        }
+    }
+
+    /**
+     * Helper method: find the direct neighbours of a cell that are not currently
+     * blocked. They are written at the beginning of the neighbours buffer.
+     *
+     * @param cell the cell to check, not on the border
+     * @param size the size of the board
+     * @return the number of neighbours of cell that are not currently blocked
+     */
+    private int possibleNeighbours(int cell, int size) {
+        Cells.neighbours(cell, size, candidates);
+        int count = 0;
+        for (int i = 0; i < Cells.MAX_NEIGHBOURS; i++) {
+            if (!blocked[candidates[i]]) {
+                neighbours[count++] = candidates[i];
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,333 @@
+import java.util.Arrays;
+
+/**
+ * The class <b>BoardCodec</b> converts a <b>GameModel</b> to and from a compact array of
+ * bytes. Apart from the blue dot, a cell is either AVAILABLE or SELECTED, so the board is
+ * stored as one bit per cell plus the cell index of the blue dot. When it is shorter, the
+ * bits are run-length encoded instead: boards are mostly AVAILABLE early in the game and
+ * long runs of SELECTED cells build up along the walls later on.
+ *
+ * Layout (all ints big-endian):
+ * - byte  version
+ * - byte  flags (FLAG_RLE, FLAG_DOT_ON_BOARD, FLAG_OTHER_DOTS)
+ * - int   size of the board
+ * - int   cell index of the blue dot (see Cells)
+ * - int   number of steps
+ * - the cells: either one bit per cell (bit k of byte k/8 is cell k), or the
+ *   lengths of the alternating runs of AVAILABLE and SELECTED cells, starting with
+ *   AVAILABLE, as unsigned variable-length integers (7 bits per byte).
+ * - with FLAG_OTHER_DOTS only (games with several blue dots): int number of other blue
+ *   dots, then the cell index of each of them, -1 for a dot that left the board.
+ */
+public final class BoardCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int FLAG_RLE = 1;
+    private static final int FLAG_DOT_ON_BOARD = 2;
+    private static final int FLAG_OTHER_DOTS = 4;
+
+    private static final int HEADER_BYTES = 14;
+
+    private BoardCodec() {
+    }
+
+    /**
+     * Encodes a model (or a snapshot of one), run-length encoding the cells if that is shorter
+     *
+     * @param model the model to encode
+     * @return the encoded model
+     */
+    public static byte[] encode(BoardState model) {
+        return encode(model, true);
+    }
+
+    /**
+     * Encodes a model
+     *
+     * @param model the model to encode
+     * @param allowRle false to always store one bit per cell
+     * @return the encoded model
+     */
+    public static byte[] encode(BoardState model, boolean allowRle) {
+        int size = model.getSize();
+        int cells = size * size;
+        int bitmapBytes = (cells + 7) / 8;
+        int dot = model.getCurrentDotCell();
+        boolean dotOnBoard = model.getCurrentStatus(Cells.x(dot, size), Cells.y(dot, size))
+                == GameModel.DOT;
+
+        byte[] data = new byte[HEADER_BYTES + bitmapBytes];
+        int length = allowRle ? encodeRuns(model, data, HEADER_BYTES) : -1;
+        int flags = dotOnBoard ? FLAG_DOT_ON_BOARD : 0;
+        if (length < 0) {
+            // clear what the attempt at run-length encoding left behind
+            Arrays.fill(data, HEADER_BYTES, data.length, (byte) 0);
+            encodeBits(model, data, HEADER_BYTES);
+            length = data.length;
+        }
+        else {
+            flags |= FLAG_RLE;
+        }
+
+        int others = model.getDotCount() - 1;
+        if (others > 0) {
+            flags |= FLAG_OTHER_DOTS;
+        }
+
+        data[0] = (byte) VERSION;
+        data[1] = (byte) flags;
+        putInt(data, 2, size);
+        putInt(data, 6, dot);
+        putInt(data, 10, model.getNumberOfSteps());
+
+        int total = (others > 0) ? length + 4 + 4 * others : length;
+        if (total == data.length) {
+            return data;
+        }
+        byte[] result = new byte[total];
+        System.arraycopy(data, 0, result, 0, length);
+        if (others > 0) {
+            putInt(result, length, others);
+            for (int k = 1; k <= others; k++) {
+                putInt(result, length + 4 * k, model.getDotCell(k));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a model produced by encode
+     *
+     * @param data the encoded model
+     * @return a new model
+     * @throws IllegalArgumentException if data is not a valid encoding
+     */
+    public static GameModel decode(byte[] data) {
+        if (data.length < HEADER_BYTES || data[0] != VERSION) {
+            throw new IllegalArgumentException("Not an encoded board");
+        }
+        int flags = data[1];
+        int size = getInt(data, 2);
+        int dot = getInt(data, 6);
+        int steps = getInt(data, 10);
+        if ((flags & ~(FLAG_RLE | FLAG_DOT_ON_BOARD | FLAG_OTHER_DOTS)) != 0) {
+            throw new IllegalArgumentException("Unknown flags " + flags);
+        }
+        // cell indices are ints
+        if (size < 1 || size > OffHeapBoard.MAX_SIZE) {
+            throw new IllegalArgumentException("Invalid size " + size);
+        }
+        int cells = size * size;
+        if (dot < 0 || dot >= cells) {
+            throw new IllegalArgumentException("Blue dot off the board: " + dot);
+        }
+        if (steps < 0) {
+            throw new IllegalArgumentException("Invalid number of steps " + steps);
+        }
+
+        // the lengths are checked before the board is allocated, so that a corrupted
+        // size is reported rather than exhausting the memory
+        int end = ((flags & FLAG_RLE) != 0) ? checkRuns(data, HEADER_BYTES, cells)
+                : HEADER_BYTES + (cells + 7) / 8;
+        int count = 0;
+        if ((flags & FLAG_OTHER_DOTS) != 0) {
+            if (end + 4 > data.length) {
+                throw new IllegalArgumentException("Truncated board");
+            }
+            count = getInt(data, end);
+            if (count < 1 || count > (data.length - end - 4) / 4) {
+                throw new IllegalArgumentException("Invalid number of blue dots " + count);
+            }
+            end += 4;
+        }
+        if (end + 4 * count != data.length) {
+            throw new IllegalArgumentException((end + 4 * count > data.length)
+                    ? "Truncated board" : "Unexpected bytes after the board");
+        }
+
+        int[][] model = new int[size][size];
+        if ((flags & FLAG_RLE) != 0) {
+            decodeRuns(data, HEADER_BYTES, model, size);
+        }
+        else {
+            decodeBits(data, HEADER_BYTES, model, size);
+        }
+        int dotX = Cells.x(dot, size);
+        int dotY = Cells.y(dot, size);
+        if ((flags & FLAG_DOT_ON_BOARD) != 0) {
+            model[dotX][dotY] = GameModel.DOT;
+        }
+        if ((flags & FLAG_OTHER_DOTS) == 0) {
+            return new GameModel(size, model, dotX, dotY, steps);
+        }
+        int[] others = new int[count];
+        for (int k = 0; k < count; k++) {
+            others[k] = getInt(data, end + 4 * k);
+            if (others[k] != Cells.NONE) {
+                if (others[k] < 0 || others[k] >= cells || others[k] == dot) {
+                    throw new IllegalArgumentException("Blue dot off the board: " + others[k]);
+                }
+                int[] column = model[Cells.x(others[k], size)];
+                if (column[Cells.y(others[k], size)] != GameModel.AVAILABLE) {
+                    throw new IllegalArgumentException("Blue dot on a taken cell: " + others[k]);
+                }
+                column[Cells.y(others[k], size)] = GameModel.DOT;
+            }
+        }
+        return new GameModel(size, model, dotX, dotY, steps, others);
+    }
+
+    /**
+     * Helper method: writes one bit per cell, set for SELECTED cells
+     */
+    private static void encodeBits(BoardState model, byte[] data, int offset) {
+        int size = model.getSize();
+        int cell = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++, cell++) {
+                if (model.getCurrentStatus(i, j) == GameModel.SELECTED) {
+                    data[offset + (cell >>> 3)] |= 1 << (cell & 7);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method: reads the cells written by encodeBits
+     */
+    private static void decodeBits(byte[] data, int offset, int[][] model, int size) {
+        int cells = size * size;
+        for (int b = 0; b < (cells + 7) / 8; b++) {
+            int bits = data[offset + b] & 0xFF;
+            // most bytes are empty early in the game: only the set bits are visited
+            while (bits != 0) {
+                int cell = (b << 3) + Integer.numberOfTrailingZeros(bits);
+                if (cell >= cells) {
+                    throw new IllegalArgumentException("Bit set past the last cell");
+                }
+                model[cell / size][cell % size] = GameModel.SELECTED;
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Helper method: writes the run lengths of the cells, giving up as soon as the
+     * encoding gets longer than the bitmap
+     *
+     * @return the end offset of the encoding in data, or -1 if it does not fit
+     */
+    private static int encodeRuns(BoardState model, byte[] data, int offset) {
+        int size = model.getSize();
+        boolean selected = false;
+        int run = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if ((model.getCurrentStatus(i, j) == GameModel.SELECTED) != selected) {
+                    offset = putVarInt(data, offset, run);
+                    if (offset < 0) {
+                        return -1;
+                    }
+                    selected = !selected;
+                    run = 0;
+                }
+                run++;
+            }
+        }
+        return putVarInt(data, offset, run);
+    }
+
+    /**
+     * Helper method: checks the run lengths written by encodeRuns: they must be within
+     * data and add up to the number of cells, only the first one being possibly empty
+     *
+     * @return the offset of the end of the runs in data
+     * @throws IllegalArgumentException if the runs are malformed
+     */
+    private static int checkRuns(byte[] data, int offset, int cells) {
+        int cell = 0;
+        boolean first = true;
+        while (cell < cells) {
+            int run = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (offset == data.length || shift > 28) {
+                    throw new IllegalArgumentException("Truncated run length");
+                }
+                b = data[offset++];
+                run |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            if (run < 0 || run > cells - cell || (run == 0 && !first)) {
+                throw new IllegalArgumentException("Invalid run length " + run);
+            }
+            cell += run;
+            first = false;
+        }
+        return offset;
+    }
+
+    /**
+     * Helper method: reads the cells written by encodeRuns, once checked by checkRuns
+     *
+     * @return the offset of the end of the runs in data
+     */
+    private static int decodeRuns(byte[] data, int offset, int[][] model, int size) {
+        int cells = size * size;
+        int cell = 0;
+        boolean selected = false;
+        while (cell < cells) {
+            int run = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = data[offset++];
+                run |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            if (selected) {
+                for (int k = cell; k < cell + run; k++) {
+                    model[k / size][k % size] = GameModel.SELECTED;
+                }
+            }
+            cell += run;
+            selected = !selected;
+        }
+        return offset;
+    }
+
+    /**
+     * Helper method: writes an unsigned variable-length int
+     *
+     * @return the offset following the value, or -1 if it does not fit
+     */
+    private static int putVarInt(byte[] data, int offset, int value) {
+        while (true) {
+            if (offset == data.length) {
+                return -1;
+            }
+            if ((value & ~0x7F) == 0) {
+                data[offset++] = (byte) value;
+                return offset;
+            }
+            data[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+    }
+
+    private static void putInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,497 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <b>BoardGenerator</b> finds initial positions matching a difficulty
+ * <b>Profile</b>, rather than taking whatever GameModel.reset() draws. Candidate boards are
+ * drawn from seeds (the board of seed s is new GameModel(size, new Random(s))) by all the
+ * cores at once, and each candidate goes through the checks of the profile from the
+ * cheapest to the most expensive, so most are rejected early:
+ * 1. the blue dot must be able to reach the border, at a distance in the range of the
+ *    profile (one breadth-first search, see EscapeMap);
+ * 2. the minimum cut, the smallest number of dots that separate the blue dot from the
+ *    border if it did not move, must be in the range of the profile (at most maxCut + 1
+ *    augmenting paths of a unit-capacity flow);
+ * 3. if the profile has a number of moves, the game must be winnable in at most that many
+ *    moves: against a perfect blue dot if there is a Tablebase for the size of the board,
+ *    otherwise by GreedyCutPlayerStrategy against the default blue dot (bfs), both seeded
+ *    from the board.
+ *
+ * A generator must be shut down once it is no longer used.
+ */
+public class BoardGenerator {
+
+    /**
+     * Candidates drawn before generate() gives up, per board asked for
+     */
+    public static final long MAX_ATTEMPTS = 100000;
+
+    private static final long PLAYER_SALT = 0x5DEECE66DL;
+    private static final long DOT_SALT = 0x2545F4914F6CDD1DL;
+
+    /**
+     * A difficulty profile: the ranges a board must be in
+     */
+    public static class Profile {
+        private final int minDistance;
+        private final int maxDistance;
+        private final int minCut;
+        private final int maxCut;
+        private final int maxMoves;
+
+        /**
+         * Constructor
+         *
+         * @param minDistance the smallest distance of the blue dot to the border
+         * @param maxDistance the largest distance of the blue dot to the border
+         * @param minCut the smallest minimum cut
+         * @param maxCut the largest minimum cut
+         * @param maxMoves the number of moves the game must be winnable in, 0 for any game
+         */
+        public Profile(int minDistance, int maxDistance, int minCut, int maxCut, int maxMoves) {
+            if (minDistance < 1 || maxDistance < minDistance || minCut < 1 || maxCut < minCut
+                    || maxMoves < 0) {
+                throw new IllegalArgumentException("Invalid profile");
+            }
+            this.minDistance = minDistance;
+            this.maxDistance = maxDistance;
+            this.minCut = minCut;
+            this.maxCut = maxCut;
+            this.maxMoves = maxMoves;
+        }
+
+        /**
+         * Reads a profile written as comma separated ranges, for instance
+         * "cut=3-4,moves=20" or "distance=3-3,cut=2-6". Omitted ranges accept any board
+         *
+         * @param text the profile
+         * @return the profile
+         * @throws IllegalArgumentException if the text is not a profile
+         */
+        public static Profile parse(String text) {
+            int[] distance = {1, Integer.MAX_VALUE};
+            int[] cut = {1, Cells.MAX_NEIGHBOURS};
+            int moves = 0;
+            try {
+                for (String part : text.split(",")) {
+                    String[] entry = part.trim().split("=");
+                    if (entry.length != 2) {
+                        throw new IllegalArgumentException("Invalid profile: " + text);
+                    }
+                    if (entry[0].equals("distance")) {
+                        distance = range(entry[1]);
+                    }
+                    else if (entry[0].equals("cut")) {
+                        cut = range(entry[1]);
+                    }
+                    else if (entry[0].equals("moves")) {
+                        moves = Integer.parseInt(entry[1]);
+                    }
+                    else {
+                        throw new IllegalArgumentException("Invalid profile: " + text);
+                    }
+                }
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid profile: " + text, e);
+            }
+            return new Profile(distance[0], distance[1], cut[0], cut[1], moves);
+        }
+
+        private static int[] range(String text) {
+            int dash = text.indexOf('-');
+            if (dash < 0) {
+                int value = Integer.parseInt(text);
+                return new int[] {value, value};
+            }
+            return new int[] {Integer.parseInt(text.substring(0, dash)),
+                    Integer.parseInt(text.substring(dash + 1))};
+        }
+
+        public String toString() {
+            return "distance=" + minDistance + "-" + maxDistance + ",cut=" + minCut + "-"
+                    + maxCut + ((maxMoves > 0) ? ",moves=" + maxMoves : "");
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    /**
+     * Number of candidates rejected by each check, and accepted, since the creation of
+     * the generator
+     */
+    private final AtomicLong[] rejected = {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+    private final AtomicLong accepted = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param parallelism the number of threads searching for boards
+     */
+    public BoardGenerator(int parallelism) {
+        this.parallelism = parallelism;
+        executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "board-generator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Builds the board of a seed
+     *
+     * @param size the size of the board
+     * @param seed the seed of the board
+     * @return the initial position
+     */
+    public static GameModel board(int size, long seed) {
+        return new GameModel(size, new Random(seed));
+    }
+
+    /**
+     * Finds boards matching a profile, all the threads drawing candidates from the same
+     * sequence of seeds
+     *
+     * @param size the size of the board
+     * @param profile the difficulty profile
+     * @param count the number of boards to find
+     * @param seed the seed of the sequence of candidates
+     * @return the seeds of the boards found (see board), in no particular order
+     * @throws IllegalStateException if fewer than count boards were found in
+     * count * MAX_ATTEMPTS candidates, or the search was interrupted
+     */
+    public long[] generate(final int size, final Profile profile, final int count,
+            final long seed) {
+        final AtomicLong next = new AtomicLong();
+        final long limit = count * MAX_ATTEMPTS;
+        final List<Long> found = new ArrayList<Long>(count);
+        List<Future<Void>> searches = new ArrayList<Future<Void>>(parallelism);
+        for (int t = 0; t < parallelism; t++) {
+            searches.add(executor.submit(new Callable<Void>() {
+                public Void call() {
+                    Checker checker = new Checker(size);
+                    long index;
+                    while ((index = next.getAndIncrement()) < limit) {
+                        synchronized (found) {
+                            if (found.size() >= count) {
+                                break;
+                            }
+                        }
+                        long candidate = candidateSeed(seed, index);
+                        if (checker.accepts(board(size, candidate), candidate, profile)) {
+                            synchronized (found) {
+                                if (found.size() < count) {
+                                    found.add(candidate);
+                                }
+                            }
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> search : searches) {
+                search.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Board generation interrupted", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Board generation failed", e.getCause());
+        }
+        if (found.size() < count) {
+            throw new IllegalStateException("No board of size " + size + " matching " + profile
+                    + " in " + limit + " candidates");
+        }
+        long[] seeds = new long[count];
+        for (int i = 0; i < count; i++) {
+            seeds[i] = found.get(i);
+        }
+        return seeds;
+    }
+
+    /**
+     * Finds one board matching a profile on the calling thread, rather than on the
+     * threads of the generator, so that it does not wait for the searches under way
+     *
+     * @param size the size of the board
+     * @param profile the difficulty profile
+     * @param seed the seed of the sequence of candidates
+     * @return the seed of the board found (see board)
+     * @throws IllegalStateException if no board was found in MAX_ATTEMPTS candidates
+     */
+    public long find(int size, Profile profile, long seed) {
+        Checker checker = new Checker(size);
+        for (long index = 0; index < MAX_ATTEMPTS; index++) {
+            long candidate = candidateSeed(seed, index);
+            if (checker.accepts(board(size, candidate), candidate, profile)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("No board of size " + size + " matching " + profile
+                + " in " + MAX_ATTEMPTS + " candidates");
+    }
+
+    /**
+     * Getter for the number of candidates rejected by each check (distance, cut, moves)
+     * and accepted, since the creation of the generator
+     *
+     * @return the four counts
+     */
+    public long[] getCounts() {
+        return new long[] {rejected[0].get(), rejected[1].get(), rejected[2].get(),
+                accepted.get()};
+    }
+
+    /**
+     * Stops the threads of the generator
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Helper method: the seed of candidate number i (splitmix64 of the seed and i)
+     */
+    private static long candidateSeed(long seed, long i) {
+        long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The checks of the profile, with the buffers they reuse from one candidate to the
+     * next. Each search thread has its own
+     */
+    private class Checker {
+        private final int size;
+        private final boolean[] blocked;
+        private final EscapeMap map = new EscapeMap();
+        private final int[] around = new int[Cells.MAX_NEIGHBOURS];
+
+        /**
+         * The solution of the board size, looked up once per checker since Tablebase.forSize
+         * is synchronized; null if there is none
+         */
+        private final Tablebase tablebase;
+
+        /**
+         * The flow of the minimum cut: through[cell] when one unit goes through the cell,
+         * pred[cell] the cell it comes from
+         */
+        private final boolean[] through;
+        private final int[] pred;
+
+        /**
+         * The breadth-first search of augmenting paths, on the nodes 2*cell (entering a
+         * cell) and 2*cell+1 (leaving it)
+         */
+        private final int[] parent;
+        private final int[] queue;
+
+        Checker(int size) {
+            this.size = size;
+            int cells = size * size;
+            blocked = new boolean[cells];
+            through = new boolean[cells];
+            pred = new int[cells];
+            parent = new int[2 * cells];
+            queue = new int[2 * cells];
+            tablebase = Tablebase.forSize(size);
+        }
+
+        boolean accepts(GameModel model, long seed, Profile profile) {
+            model.fillBlocked(blocked);
+            int dot = model.getCurrentDotCell();
+            // the dot does not block itself
+            blocked[dot] = false;
+            map.compute(blocked, size);
+            int distance = map.getDistance(dot);
+            if (distance < profile.minDistance || distance > profile.maxDistance) {
+                rejected[0].incrementAndGet();
+                return false;
+            }
+            int cut = minCut(dot, profile.maxCut + 1);
+            if (cut < profile.minCut || cut > profile.maxCut) {
+                rejected[1].incrementAndGet();
+                return false;
+            }
+            if (profile.maxMoves > 0 && !winnable(model, seed, profile.maxMoves)) {
+                rejected[2].incrementAndGet();
+                return false;
+            }
+            accepted.incrementAndGet();
+            return true;
+        }
+
+        /**
+         * The minimum number of cells to select to separate the dot from the border (the
+         * maximum number of paths to the border sharing no cell), counted up to limit
+         */
+        private int minCut(int dot, int limit) {
+            Arrays.fill(through, false);
+            Arrays.fill(pred, Cells.NONE);
+            int flow = 0;
+            while (flow < limit && augment(dot)) {
+                flow++;
+            }
+            return flow;
+        }
+
+        /**
+         * Finds a path from the dot to the border in the residual graph, and pushes one
+         * unit of flow along it. Each cell but the dot has a capacity of one, from the node
+         * entering it to the node leaving it; moving between neighbours is not limited
+         */
+        private boolean augment(int dot) {
+            Arrays.fill(parent, -1);
+            int source = 2 * dot + 1;
+            parent[source] = source;
+            int front = 0;
+            int rear = 0;
+            queue[rear++] = source;
+            int exit = -1;
+            while (front < rear && exit < 0) {
+                int node = queue[front++];
+                int cell = node >> 1;
+                if ((node & 1) == 0) {
+                    // entering a cell: go through it, or back to where its flow comes from
+                    if (!through[cell]) {
+                        rear = reach(node, node + 1, rear);
+                    }
+                    else if (pred[cell] != Cells.NONE) {
+                        rear = reach(node, 2 * pred[cell] + 1, rear);
+                    }
+                    continue;
+                }
+                if (Cells.isOnBorder(cell, size)) {
+                    exit = node;
+                    break;
+                }
+                // leaving a cell: to its neighbours, or back into it if flow goes through it
+                if (cell != dot && through[cell]) {
+                    rear = reach(node, node - 1, rear);
+                }
+                Cells.neighbours(cell, size, around);
+                for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+                    int next = around[k];
+                    if (!blocked[next] && next != dot) {
+                        rear = reach(node, 2 * next, rear);
+                    }
+                }
+            }
+            if (exit < 0) {
+                return false;
+            }
+
+            // push the unit along the path, from the border back to the dot
+            int node = exit;
+            while (node != source) {
+                int from = parent[node];
+                int cell = node >> 1;
+                int fromCell = from >> 1;
+                if ((from & 1) == 0 && (node & 1) == 1) {
+                    // through a cell (forwards), or back out of the cell it came from
+                    if (fromCell == cell) {
+                        through[cell] = true;
+                    }
+                    else if (pred[fromCell] == cell) {
+                        pred[fromCell] = Cells.NONE;
+                    }
+                }
+                else if ((from & 1) == 1 && (node & 1) == 0) {
+                    if (fromCell == cell) {
+                        through[cell] = false;
+                    }
+                    else {
+                        pred[cell] = fromCell;
+                    }
+                }
+                node = from;
+            }
+            return true;
+        }
+
+        private int reach(int from, int node, int rear) {
+            if (parent[node] < 0) {
+                parent[node] = from;
+                queue[rear++] = node;
+            }
+            return rear;
+        }
+
+        /**
+         * Whether the player can win in at most maxMoves moves (see BoardGenerator)
+         */
+        private boolean winnable(GameModel model, long seed, int maxMoves) {
+            if (tablebase != null) {
+                int value = tablebase.lookup(model);
+                return value != Tablebase.LOSS && value <= maxMoves;
+            }
+            GameModel game = board(size, seed);
+            PlayerStrategy player = new GreedyCutPlayerStrategy(new Random(seed ^ PLAYER_SALT));
+            GameEngine engine = new GameEngine(DotStrategies.create(DotStrategies.NAMES[0],
+                    new Random(seed ^ DOT_SALT)), 0, 0);
+            for (int move = 0; move < maxMoves; move++) {
+                int cell = player.nextMove(game, Long.MAX_VALUE);
+                if (cell == Cells.NONE) {
+                    return false;
+                }
+                int status = engine.play(game, Cells.x(cell, size), Cells.y(cell, size));
+                if (status != GameEngine.PLAYING) {
+                    return status == GameEngine.WON;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Generates boards and prints their seeds, with the number of candidates rejected by
+     * each check and the time taken
+     *
+     * @param args the size of the board, the profile, and optionally the number of boards
+     *            (10 by default), the seed, and the number of threads (all cores by default)
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java BoardGenerator size profile [count] [seed] [threads]");
+            System.out.println("profile: [distance=MIN-MAX,][cut=MIN-MAX,][moves=MAX]");
+            return;
+        }
+        int size = Integer.parseInt(args[0]);
+        Profile profile = Profile.parse(args[1]);
+        int count = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : new Random().nextLong();
+        int threads = (args.length > 4) ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+
+        BoardGenerator generator = new BoardGenerator(threads);
+        try {
+            long start = System.nanoTime();
+            long[] seeds = generator.generate(size, profile, count, seed);
+            long millis = (System.nanoTime() - start) / 1000000;
+            for (long s : seeds) {
+                System.out.println(s);
+            }
+            long[] counts = generator.getCounts();
+            System.out.println(String.format("%d boards in %d ms on %d threads; rejected: "
+                    + "%d by distance, %d by cut, %d by moves", counts[3], millis, threads,
+                    counts[0], counts[1], counts[2]));
+        }
+        finally {
+            generator.shutdown();
+        }
+    }
+}
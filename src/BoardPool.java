@@ -0,0 +1,134 @@
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The class <b>BoardPool</b> keeps boards of a given size and difficulty profile ready
+ * to be played, so that starting a new game at that difficulty is instant. Whenever the
+ * pool falls to half of its capacity, it is filled up again in the background by a
+ * <b>BoardGenerator</b>. If it is ever empty, poll() returns null, and take() generates
+ * a board itself on the calling thread (never the event dispatch thread).
+ */
+public class BoardPool {
+
+    private final BoardGenerator generator;
+    private final int size;
+    private final BoardGenerator.Profile profile;
+    private final int capacity;
+    private final BlockingQueue<GameModel> boards;
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final Random seeds = new Random();
+
+    /**
+     * True if the last refill found no board matching the profile
+     */
+    private volatile boolean exhausted;
+
+    /**
+     * Constructor. Starts filling the pool right away
+     *
+     * @param generator the generator of the boards
+     * @param size the size of the boards
+     * @param profile the difficulty of the boards
+     * @param capacity the number of boards kept ready
+     */
+    public BoardPool(BoardGenerator generator, int size, BoardGenerator.Profile profile,
+            int capacity) {
+        this.generator = generator;
+        this.size = size;
+        this.profile = profile;
+        this.capacity = capacity;
+        boards = new ArrayBlockingQueue<GameModel>(capacity);
+        refill();
+    }
+
+    /**
+     * Takes a board out of the pool, if one is ready. Never blocks
+     *
+     * @return a new game, or null if the pool is empty
+     * @throws IllegalStateException if the pool is empty and no board matching the
+     *             profile could be found to fill it
+     */
+    public GameModel poll() {
+        GameModel board = boards.poll();
+        refill();
+        if (board == null && exhausted) {
+            throw new IllegalStateException("No board of size " + size + " matching "
+                    + profile);
+        }
+        return board;
+    }
+
+    /**
+     * Takes a board out of the pool, or generates one on the calling thread if the pool
+     * is empty; this can take a while, so not on the event dispatch thread
+     *
+     * @return a new game
+     * @throws IllegalStateException if no board matching the profile can be found
+     */
+    public GameModel take() {
+        GameModel board = boards.poll();
+        refill();
+        if (board == null) {
+            board = BoardGenerator.board(size, generator.find(size, profile, nextSeed()));
+        }
+        return board;
+    }
+
+    /**
+     * Getter for the size of the boards
+     *
+     * @return the size of the boards
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Getter for the number of boards ready
+     *
+     * @return the number of boards
+     */
+    public int available() {
+        return boards.size();
+    }
+
+    /**
+     * Helper method: fills the pool up in the background if it is half empty and not
+     * being filled already
+     */
+    private void refill() {
+        if (boards.size() > capacity / 2 || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        Thread filler = new Thread("board-pool") {
+            public void run() {
+                try {
+                    int missing = capacity - boards.size();
+                    if (missing > 0) {
+                        for (long seed : generator.generate(size, profile, missing, nextSeed())) {
+                            boards.offer(BoardGenerator.board(size, seed));
+                        }
+                    }
+                    exhausted = false;
+                }
+                catch (IllegalStateException e) {
+                    // poll() and take() report it when the pool runs out
+                    exhausted = true;
+                }
+                finally {
+                    refilling.set(false);
+                }
+            }
+        };
+        filler.setDaemon(true);
+        filler.start();
+    }
+
+    private long nextSeed() {
+        synchronized (seeds) {
+            return seeds.nextLong();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * The class <b>BoardSnapshot</b> is an immutable copy of the state of a <b>GameModel</b>
+ * at a given version. It can be read from any thread (rendering, analysis, autosave)
+ * while the game goes on.
+ *
+ * Snapshots share the rows of the board with the model that published them: the model
+ * copies a row before modifying it if the row belongs to a published snapshot
+ * (copy-on-write), so publishing a snapshot costs O(N) rather than O(N^2).
+ */
+public final class BoardSnapshot implements BoardState {
+
+    private final long version;
+    private final int size;
+    private final int[][] rows;
+    private final int currentDot;
+    private final int[] otherDots;
+    private final int numberOfSteps;
+    private final long hash;
+
+    /**
+     * Constructor, used by GameModel
+     *
+     * @param version the version of the model
+     * @param size the size of the board
+     * @param rows the rows of the board; the caller must never modify them again
+     * @param currentDot the cell index of the blue dot
+     * @param otherDots the cells of the other blue dots; the caller must never modify them
+     * @param numberOfSteps the number of steps played
+     * @param hash the hash of the position
+     */
+    BoardSnapshot(long version, int size, int[][] rows, int currentDot, int[] otherDots,
+            int numberOfSteps, long hash) {
+        this.version = version;
+        this.size = size;
+        this.rows = rows;
+        this.currentDot = currentDot;
+        this.otherDots = otherDots;
+        this.numberOfSteps = numberOfSteps;
+        this.hash = hash;
+    }
+
+    /**
+     * Getter for the version of the model this snapshot was taken from. Versions
+     * increase with every change of the model.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCurrentStatus(int i, int j) {
+        return rows[i][j];
+    }
+
+    /**
+     * Getter for a row of the board (the dots with a given x coordinate). Rows are
+     * shared between snapshots: two snapshots holding the same row array have the same
+     * dots in that row, so comparing the references skips the rows that did not change.
+     *
+     * @param i the x coordinate of the row
+     * @return the row, which must not be modified
+     */
+    int[] getRow(int i) {
+        return rows[i];
+    }
+
+    public int getCurrentDotCell() {
+        return currentDot;
+    }
+
+    public int getDotCount() {
+        return otherDots.length + 1;
+    }
+
+    public int getDotCell(int k) {
+        return (k == 0) ? currentDot : otherDots[k - 1];
+    }
+
+    public int getNumberOfSteps() {
+        return numberOfSteps;
+    }
+
+    /**
+     * Getter for the hash of the position (see GameModel.getHash())
+     *
+     * @return the hash
+     */
+    public long getHash() {
+        return hash;
+    }
+}
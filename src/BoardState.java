@@ -0,0 +1,52 @@
+/**
+ * Read-only view of the state of a game: the dots of the board, the blue dot(s) and the
+ * number of steps. Implemented by the live <b>GameModel</b> (single thread) and by its
+ * immutable <b>BoardSnapshot</b> (any thread).
+ */
+public interface BoardState {
+
+    /**
+     * Getter for the size of the board
+     *
+     * @return the size of the board
+     */
+    public int getSize();
+
+    /**
+     * Returns the status (GameModel.AVAILABLE, SELECTED or DOT) of a dot
+     *
+     * @param i the x coordinate of the dot
+     * @param j the y coordinate of the dot
+     * @return the status of the dot at location (i,j)
+     */
+    public int getCurrentStatus(int i, int j);
+
+    /**
+     * Getter for the location of the blue dot
+     *
+     * @return the cell index (see Cells) of the blue dot
+     */
+    public int getCurrentDotCell();
+
+    /**
+     * Getter for the number of blue dots, 1 except in the variant with several of them
+     *
+     * @return the number of blue dots
+     */
+    public int getDotCount();
+
+    /**
+     * Getter for the location of one of the blue dots
+     *
+     * @param k the index of the dot, dot 0 being the one of getCurrentDotCell()
+     * @return the cell index (see Cells) of the dot, Cells.NONE if it left the board
+     */
+    public int getDotCell(int k);
+
+    /**
+     * Getter for the number of steps played
+     *
+     * @return the number of steps
+     */
+    public int getNumberOfSteps();
+}
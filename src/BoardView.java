@@ -1,12 +1,14 @@
 import java.awt.*;
 
 import javax.swing.BorderFactory;
+import javax.swing.Icon;
 import javax.swing.JPanel;
 
 
 /**
  * The class <b>BoardView</b> provides the current view of the board. It extends
  * <b>JPanel</b> and lays out a two dimensional array of <b>DotButton</b> instances.
+ * The cells are made smaller on large boards so that the board fits on the screen.
  *
  * @author Guy-Vincent Jourdan, University of Ottawa
  */
@@ -25,6 +27,24 @@ public class BoardView extends JPanel {
 	 * Reference to the model of the game
 	 */
     private GameModel  gameModel;
+
+    /**
+     * The snapshot the DotButtons currently show, null before the first update
+     */
+    private BoardSnapshot rendered;
+
+    /**
+     * The cell highlighted by showHint, Cells.NONE if there is none
+     */
+    private int hint = Cells.NONE;
+
+	/**
+	 * The listener of the DotButtons, the icons they share, and the number of rows of
+	 * DotButtons created so far
+	 */
+	private GameController gameController;
+	private Icon[] icons;
+	private int builtRows;
  
 
 	/**
@@ -38,16 +58,46 @@ public class BoardView extends JPanel {
      */
 
     public BoardView(GameModel gameModel, GameController gameController) {
+		this(gameModel, gameController, gameModel.getSize());
+    }
+
+	/**
+     * Constructor used for initializing the board progressively: only the first rows
+     * of DotButtons are created, the others are added by addRows.
+     * 
+     * @param gameModel
+     *            the model of the game (already initialized)
+     * @param gameController
+     *            the controller
+     * @param rows
+     *            the number of rows created right away
+     */
+
+    public BoardView(GameModel gameModel, GameController gameController, int rows) {
 
     	this.gameModel = gameModel;
+		this.gameController = gameController;
 
 		setBackground(Color.WHITE);
 		setLayout(new GridLayout(gameModel.getSize(), 1));
 
 		setBorder(BorderFactory.createEmptyBorder(20, 20, 0, 20));
 		board = new DotButton[gameModel.getSize()][gameModel.getSize()];
+		icons = IconAtlas.getIcons(IconAtlas.cellSizeFor(gameModel.getSize()));
+		addRows(rows);
+    }
 
-		for (int row = 0; row < gameModel.getSize(); row++) {
+	/**
+	 * Creates the next rows of DotButtons, showing the current state of the model
+	 *
+	 * @param count the number of rows to create
+	 * @return true if all the rows of the board are created
+	 */
+	public boolean addRows(int count) {
+		BoardSnapshot snapshot = gameModel.getSnapshot();
+		int size = snapshot.getSize();
+		int last = Math.min(size, builtRows + count);
+		for (int row = builtRows; row < last; row++) {
 			JPanel panel = new JPanel();
 			if(row%2==0) {
 				panel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 20));
@@ -57,29 +107,71 @@ public class BoardView extends JPanel {
 				panel.setLayout(new FlowLayout(FlowLayout.TRAILING,2,2));		
 			}
 			panel.setBackground(Color.WHITE);
-		    for (int column = 0; column < gameModel.getSize(); column++) {
-				board[column][row] = new DotButton(row, column, gameModel.AVAILABLE);
+		    for (int column = 0; column < size; column++) {
+				board[column][row] = new DotButton(row, column,
+						snapshot.getCurrentStatus(column, row), icons);
 				board[column][row].addActionListener(gameController);
 				panel.add(board[column][row]);
 		    }
 		    add(panel);
 		}
+		builtRows = last;
+		return builtRows == size;
+	}
 
-    }
+	/**
+	 * Getter for the number of rows of DotButtons created so far
+	 *
+	 * @return the number of rows
+	 */
+	public int getBuiltRows() {
+		return builtRows;
+	}
 
  	/**
-	 * update the status of the board's DotButton instances based on the current game model
+	 * update the status of the board's DotButton instances based on the latest snapshot
+	 * of the game model. Only the dots that differ from the snapshot shown so far are
+	 * updated (and repainted): rows shared with that snapshot are skipped without being
+	 * scanned, so a move costs O(N) rather than O(N^2). Nothing is done until all the
+	 * rows are created
 	 */
 
     public void update(){
-    	for(int i = 0; i < gameModel.getSize(); i++){
-		   	for(int j = 0; j < gameModel.getSize(); j++){
-		   		board[i][j].setType(gameModel.getCurrentStatus(i,j));
+		BoardSnapshot snapshot = gameModel.getSnapshot();
+		if (snapshot == rendered || builtRows < snapshot.getSize()) {
+			return;
+		}
+    	for(int i = 0; i < snapshot.getSize(); i++){
+			int[] row = snapshot.getRow(i);
+			int[] shown = (rendered == null) ? null : rendered.getRow(i);
+			if (row == shown) {
+				continue;
+			}
+		   	for(int j = 0; j < snapshot.getSize(); j++){
+				if (shown == null || row[j] != shown[j]) {
+		   			board[i][j].setType(row[j]);
+				}
 		   	}
 		}
-		repaint();
+		rendered = snapshot;
+		showHint(Cells.NONE);
     }
 
+	/**
+	 * Highlights the dot suggested by the Hint button, until the board changes
+	 * @param cell the cell (see Cells) to highlight, Cells.NONE to remove the hint
+	 */
+	public void showHint(int cell) {
+		int size = board.length;
+		if (hint != Cells.NONE) {
+			board[Cells.x(hint, size)][Cells.y(hint, size)].setHinted(false);
+		}
+		hint = (builtRows < size) ? Cells.NONE : cell;
+		if (hint != Cells.NONE) {
+			board[Cells.x(hint, size)][Cells.y(hint, size)].setHinted(true);
+		}
+	}
+
 	/**
 	 * Sets the Game Model to be represented by the BoardView
 	 * @param model the game model to be represented
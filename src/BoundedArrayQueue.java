@@ -0,0 +1,147 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The class <b>BoundedArrayQueue</b> is a fixed-capacity <b>Queue</b> that can be shared by
+ * any number of producer and consumer threads without locking (the array-based algorithm of
+ * D. Vyukov). Each slot of the ring has a sequence number telling whether it is ready to be
+ * written or read at a given position, so producers only compete on the tail counter and
+ * consumers on the head counter. The two counters are padded onto separate cache lines so
+ * that producers and consumers do not slow each other down through false sharing.
+ *
+ * Null elements are not allowed.
+ */
+public class BoundedArrayQueue<E> implements Queue<E> {
+
+    /**
+     * A counter alone on its cache line (64 bytes on either side)
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedCounter {
+        private long p1, p2, p3, p4, p5, p6, p7;
+        private volatile long value;
+        private long q1, q2, q3, q4, q5, q6, q7;
+
+        private static final AtomicLongFieldUpdater<PaddedCounter> VALUE =
+                AtomicLongFieldUpdater.newUpdater(PaddedCounter.class, "value");
+
+        private boolean compareAndSet(long expected, long update) {
+            return VALUE.compareAndSet(this, expected, update);
+        }
+    }
+
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final PaddedCounter head = new PaddedCounter();
+    private final PaddedCounter tail = new PaddedCounter();
+
+    /**
+     * Constructor
+     *
+     * @param capacity the maximum number of elements, rounded up to a power of two
+     */
+    public BoundedArrayQueue(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int slots = Integer.highestOneBit(capacity);
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        mask = slots - 1;
+        items = new AtomicReferenceArray<E>(slots);
+        sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean isEmpty() {
+        return head.value >= tail.value;
+    }
+
+    /**
+     * Adds an element at the end of the queue
+     *
+     * @param o the element
+     * @throws IllegalStateException if the queue is full
+     */
+    public void enqueue(E o) {
+        if (!offer(o)) {
+            throw new IllegalStateException("Queue full");
+        }
+    }
+
+    public E dequeue() throws EmptyQueueException {
+        E result = poll();
+        if (result == null) {
+            throw new EmptyQueueException();
+        }
+        return result;
+    }
+
+    /**
+     * Adds an element at the end of the queue, if there is room
+     *
+     * @param o the element
+     * @return false if the queue is full
+     */
+    public boolean offer(E o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long position = tail.value;
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items.lazySet(index, o);
+                    // publishes the element to the consumers
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            }
+            else if (difference < 0) {
+                return false;
+            }
+            // else another producer took this position: retry with the new tail
+        }
+    }
+
+    /**
+     * Removes and returns the first element, if any
+     *
+     * @return the first element, or null if the queue is empty
+     */
+    public E poll() {
+        while (true) {
+            long position = head.value;
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E result = items.get(index);
+                    items.lazySet(index, null);
+                    // hands the slot back to the producers, one lap later
+                    sequences.set(index, position + mask + 1);
+                    return result;
+                }
+            }
+            else if (difference < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Getter for the capacity of the queue
+     *
+     * @return the maximum number of elements
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+}
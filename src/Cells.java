@@ -0,0 +1,90 @@
+/**
+ * The class <b>Cells</b> encodes a location of the board as a single int, the cell
+ * index x * size + y, and provides static helpers on that encoding. Used on the hot
+ * paths of the game (model, search) so that they do not allocate a <b>Point</b> per
+ * location; <b>Point</b> is only used at the boundary with the view.
+ *
+ * The board is an hexagonal grid in which odd rows are shifted right. The
+ * neighbours of a cell are returned in a fixed order: the two cells of the row
+ * above, the left and right cells, then the two cells of the row below.
+ */
+public final class Cells {
+
+    /**
+     * Value used for "no cell" (e.g. the blue dot has left the board)
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Maximum number of neighbours of a cell
+     */
+    public static final int MAX_NEIGHBOURS = 6;
+
+    private Cells() {
+    }
+
+    /**
+     * Encodes a location
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param size the size of the board
+     * @return the cell index of (x,y)
+     */
+    public static int index(int x, int y, int size) {
+        return x * size + y;
+    }
+
+    /**
+     * Decodes the x coordinate of a cell
+     *
+     * @param cell the cell index
+     * @param size the size of the board
+     * @return the x coordinate of the cell
+     */
+    public static int x(int cell, int size) {
+        return cell / size;
+    }
+
+    /**
+     * Decodes the y coordinate of a cell
+     *
+     * @param cell the cell index
+     * @param size the size of the board
+     * @return the y coordinate of the cell
+     */
+    public static int y(int cell, int size) {
+        return cell % size;
+    }
+
+    /**
+     * Checks if a cell is on the border of the board
+     *
+     * @param cell the cell index
+     * @param size the size of the board
+     * @return true iff the cell is on the border of the board
+     */
+    public static boolean isOnBorder(int cell, int size) {
+        int x = cell / size;
+        int y = cell - x * size;
+        return x == 0 || x == size - 1 || y == 0 || y == size - 1;
+    }
+
+    /**
+     * Writes the neighbours of a cell that is not on the border into out
+     *
+     * @param cell the cell index, not on the border
+     * @param size the size of the board
+     * @param out an array of at least MAX_NEIGHBOURS elements
+     */
+    public static void neighbours(int cell, int size, int[] out) {
+        // x-1 on an even row, x on an odd one
+        int shift = ((cell % size) % 2 == 0) ? -size : 0;
+        out[0] = cell + shift - 1;
+        out[1] = cell + shift + size - 1;
+        out[2] = cell - size;
+        out[3] = cell + size;
+        out[4] = cell + shift + 1;
+        out[5] = cell + shift + size + 1;
+    }
+}
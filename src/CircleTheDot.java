@@ -1,3 +1,8 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.swing.SwingUtilities;
+
 
 
 /**
@@ -11,14 +16,31 @@ public class CircleTheDot {
    /**
      * <b>main</b> of the application. Creates the instance of  GameController 
      * and starts the game. If a game size (>4) is passed as parameter, it is 
-     * used as the board size. Otherwise, a default value is passed
+     * used as the board size. Otherwise, a default value is passed.
+     * The name of the dot strategy (bfs, escape or lookahead) and its time budget
+     * per move in milliseconds can follow the size.
+     * "--server [port] [shards]" starts a headless GameServer instead, and
+     * "--script [file] [size] [strategy] [budget]" plays the commands of a file (or of
+     * the standard input) with a ScriptedGame, without any window.
+     * Slow handling of the events of the window is logged by EdtWatchdog
      * 
      * @param args
      *            command line parameters
+     * @throws IOException if the server cannot be started, or the script cannot be read
      */
-     public static void main(String[] args) {
+     public static void main(String[] args) throws IOException {
+        if (args.length >= 1 && args[0].equals("--server")) {
+            GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--script")) {
+            ScriptedGame.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         int size = 9;
-        if (args.length == 1) {
+        String strategy = DotStrategies.NAMES[0];
+        long timeBudget = 0;
+        if (args.length >= 1) {
             try {
                 size = Integer.parseInt(args[0]);
                 if(size<4){
@@ -29,7 +51,33 @@ public class CircleTheDot {
                 System.out.println("Invalide argument, using default...");
             }
         }
-        GameController game = new GameController(size);
+        if (args.length >= 2) {
+            strategy = args[1];
+        }
+        if (args.length >= 3) {
+            try {
+                timeBudget = Long.parseLong(args[2]);
+            } catch(NumberFormatException e){
+                System.out.println("Invalide time budget, using no limit...");
+            }
+        }
+        DotStrategy dotStrategy;
+        try {
+            dotStrategy = DotStrategies.create(strategy, new java.util.Random());
+        } catch(IllegalArgumentException e){
+            System.out.println("Unknown strategy " + strategy + ", using default...");
+            dotStrategy = DotStrategies.create(DotStrategies.NAMES[0], new java.util.Random());
+        }
+        IconAtlas.preload(size);
+        EdtWatchdog.install();
+        final int boardSize = size;
+        final DotStrategy chosen = dotStrategy;
+        final long budget = timeBudget;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                new GameController(boardSize, chosen, budget);
+            }
+        });
     }
 
 
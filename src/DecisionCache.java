@@ -0,0 +1,269 @@
+import java.util.Arrays;
+
+/**
+ * The class <b>DecisionCache</b> is a bounded least-recently-used map from a 64 bits
+ * position hash to an int answer (the move of the blue dot), stored in primitive arrays.
+ *
+ * Entries live in parallel arrays (key, value, and the previous and next entries of a
+ * doubly-linked list in order of use). They are found through an open-addressing table of
+ * entry indices with linear probing; removing an entry shifts the following indices of its
+ * probe sequence back, so the table never holds tombstones. The arrays start small and are
+ * doubled up to the capacity, so an unused cache costs almost nothing.
+ *
+ * Every operation is O(1) on average and does not allocate once the cache is full.
+ */
+public class DecisionCache {
+
+    private static final int INITIAL_ENTRIES = 64;
+    private static final int NO_ENTRY = -1;
+
+    private final int capacity;
+
+    /**
+     * The entries: key, value, and their neighbours in order of use (NO_ENTRY at the ends)
+     */
+    private long[] keys;
+    private int[] values;
+    private int[] previous;
+    private int[] next;
+    private int count;
+
+    /**
+     * Most and least recently used entries
+     */
+    private int newest = NO_ENTRY;
+    private int oldest = NO_ENTRY;
+
+    /**
+     * The open-addressing table: entry index + 1 for each slot, 0 for an empty slot.
+     * It has at least twice as many slots as there are entries.
+     */
+    private int[] slots;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor
+     *
+     * @param capacity the maximum number of entries, 0 to disable the cache
+     */
+    public DecisionCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Looks up an answer, and marks it as the most recently used
+     *
+     * @param key the position hash
+     * @param missing the value to return if there is no answer for key
+     * @return the answer stored for key, or missing
+     */
+    public int get(long key, int missing) {
+        int entry = find(key);
+        if (entry == NO_ENTRY) {
+            misses++;
+            return missing;
+        }
+        hits++;
+        if (entry != newest) {
+            unlink(entry);
+            linkNewest(entry);
+        }
+        return values[entry];
+    }
+
+    /**
+     * Stores an answer, evicting the least recently used one if the cache is full
+     *
+     * @param key the position hash
+     * @param value the answer
+     */
+    public void put(long key, int value) {
+        if (capacity == 0) {
+            return;
+        }
+        int entry = find(key);
+        if (entry != NO_ENTRY) {
+            values[entry] = value;
+            if (entry != newest) {
+                unlink(entry);
+                linkNewest(entry);
+            }
+            return;
+        }
+        if (keys == null || (count == keys.length && count < capacity)) {
+            grow();
+        }
+        if (count == capacity) {
+            // reuse the entry of the least recently used answer
+            entry = oldest;
+            unlink(entry);
+            removeSlot(keys[entry], entry);
+        }
+        else {
+            entry = count++;
+        }
+        keys[entry] = key;
+        values[entry] = value;
+        linkNewest(entry);
+        int mask = slots.length - 1;
+        int slot = slotOf(key, mask);
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = entry + 1;
+    }
+
+    /**
+     * Removes every answer. The counters are kept.
+     */
+    public void clear() {
+        if (slots != null) {
+            Arrays.fill(slots, 0);
+        }
+        count = 0;
+        newest = NO_ENTRY;
+        oldest = NO_ENTRY;
+    }
+
+    /**
+     * Getter for the number of answers stored
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Getter for the number of lookups that found an answer
+     *
+     * @return the number of hits since the cache was created
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter for the number of lookups that did not find an answer
+     *
+     * @return the number of misses since the cache was created
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Helper method: the entry holding a key, or NO_ENTRY
+     */
+    private int find(long key) {
+        if (count == 0) {
+            return NO_ENTRY;
+        }
+        int mask = slots.length - 1;
+        for (int slot = slotOf(key, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = slots[slot] - 1;
+            if (keys[entry] == key) {
+                return entry;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * Helper method: empties the slot of an entry, then moves back the entries of the
+     * same cluster that would no longer be found (backward shift deletion)
+     */
+    private void removeSlot(long key, int entry) {
+        int mask = slots.length - 1;
+        int hole = slotOf(key, mask);
+        while (slots[hole] != entry + 1) {
+            hole = (hole + 1) & mask;
+        }
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (slots[slot] == 0) {
+                break;
+            }
+            int home = slotOf(keys[slots[slot] - 1], mask);
+            // move the entry if its home is not in the cyclic range (hole, slot]
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots[hole] = slots[slot];
+                hole = slot;
+            }
+        }
+        slots[hole] = 0;
+    }
+
+    /**
+     * Helper method: doubles the entry arrays (up to the capacity) and rebuilds the table
+     */
+    private void grow() {
+        int entries = (keys == null) ? Math.min(INITIAL_ENTRIES, capacity)
+                : (int) Math.min((long) keys.length * 2, capacity);
+        long[] largerKeys = new long[entries];
+        int[] largerValues = new int[entries];
+        int[] largerPrevious = new int[entries];
+        int[] largerNext = new int[entries];
+        if (keys != null) {
+            System.arraycopy(keys, 0, largerKeys, 0, count);
+            System.arraycopy(values, 0, largerValues, 0, count);
+            System.arraycopy(previous, 0, largerPrevious, 0, count);
+            System.arraycopy(next, 0, largerNext, 0, count);
+        }
+        keys = largerKeys;
+        values = largerValues;
+        previous = largerPrevious;
+        next = largerNext;
+
+        slots = new int[Integer.highestOneBit(Math.max(2, entries) * 2 - 1) * 2];
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < count; entry++) {
+            int slot = slotOf(keys[entry], mask);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    private void unlink(int entry) {
+        if (previous[entry] == NO_ENTRY) {
+            oldest = next[entry];
+        }
+        else {
+            next[previous[entry]] = next[entry];
+        }
+        if (next[entry] == NO_ENTRY) {
+            newest = previous[entry];
+        }
+        else {
+            previous[next[entry]] = previous[entry];
+        }
+    }
+
+    private void linkNewest(int entry) {
+        previous[entry] = newest;
+        next[entry] = NO_ENTRY;
+        if (newest == NO_ENTRY) {
+            oldest = entry;
+        }
+        else {
+            next[newest] = entry;
+        }
+        newest = entry;
+    }
+
+    /**
+     * Helper method: the home slot of a key. Position hashes are already well mixed, the
+     * two halves are only folded together.
+     */
+    private static int slotOf(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
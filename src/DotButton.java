@@ -1,6 +1,6 @@
 import java.awt.Color;
 
-import javax.swing.ImageIcon;
+import javax.swing.Icon;
 import javax.swing.JButton;
 import javax.swing.BorderFactory;
 import javax.swing.border.Border;
@@ -15,6 +15,7 @@ import javax.swing.border.Border;
  * data/ball-0.png => grey icon
  * data/ball-1.png => orange icon
  * data/ball-2.png => blue icon
+ * They are loaded and scaled to the size of the cells by <b>IconAtlas</b>.
  *
  *  <a href=
  * "http://developer.apple.com/library/safari/#samplecode/Puzzler/Introduction/Intro.html%23//apple_ref/doc/uid/DTS10004409"
@@ -27,13 +28,6 @@ public class DotButton extends JButton {
     private static final long serialVersionUID = 1L;
 
 
-    /**
-     * Number of colours
-     */
-
-    private static final int NUM_COLOURS = 3;
-
-
     /**
      * The cell type. Valid values are GameModel.AVAILABLE, 
      * GameModel.SELECTED and GameModel.DOT
@@ -49,16 +43,21 @@ public class DotButton extends JButton {
     private int row, column;
 
     /**
-     * An array is used to cache all the images. Since the images are not
-     * modified, all the cells that display the same image reuse the same
-     * <b>ImageIcon</b> object. Notice the use of the keyword <b>static</b>.
+     * The icons of the three types. Since the images are not modified, all the
+     * cells of a board share the same array (see IconAtlas)
      */
 
-    private static final ImageIcon[] icons = new ImageIcon[NUM_COLOURS];
+    private final Icon[] icons;
+
+    /**
+     * Background of a dot suggested by the Hint button
+     */
+    private static final Color HINT = new Color(0xB8, 0xE8, 0xB0);
 
 
     /**
-     * Constructor used for initializing a cell of a specified type.
+     * Constructor used for initializing a cell of a specified type, with icons of
+     * the original size.
      * 
      * @param row
      *            the row of this Cell
@@ -69,9 +68,27 @@ public class DotButton extends JButton {
      */
 
     public DotButton(int row, int column, int type) {
+    	this(row, column, type, IconAtlas.getIcons(IconAtlas.NATIVE_SIZE));
+    }
+
+    /**
+     * Constructor used for initializing a cell of a specified type.
+     * 
+     * @param row
+     *            the row of this Cell
+     * @param column
+     *            the column of this Cell
+     * @param type
+     *            specifies the type of this cell
+     * @param icons
+     *            the icons of the three types, as given by IconAtlas.getIcons
+     */
+
+    public DotButton(int row, int column, int type, Icon[] icons) {
     	this.row = row;
     	this.column = column;
     	this.type = type;
+    	this.icons = icons;
     	setBackground(Color.WHITE);
     	setIcon(getImageIcon());
     	Border emptyBorder = BorderFactory.createEmptyBorder(0, 0, 0, 0);
@@ -80,17 +97,13 @@ public class DotButton extends JButton {
     }
 
     /**
-     * Determine the image to use based on the cell type. Implements a caching mechanism.
+     * Determine the image to use based on the cell type. The images are decoded
+     * and scaled in advance by IconAtlas.
      * 
      * @return the image to be displayed by the button
      */
 
-    private ImageIcon getImageIcon() {
-	
-    	if (icons[type] == null) {
-    	    String strId = Integer.toString(type);
-    	    icons[type] = new ImageIcon("data/ball-" + strId + ".png");
-    	}
+    private Icon getImageIcon() {
     	return icons[type];
     }
 
@@ -102,11 +115,25 @@ public class DotButton extends JButton {
      */
 
     public void setType(int type) {
+    	if (type == this.type) {
+    		return;
+    	}
     	this.type = type;
     	setIcon(getImageIcon());
     }
 
  
+    /**
+     * Shows or hides the hint on this cell: a tinted background behind its icon
+     *
+     * @param hinted
+     *            true to show the hint
+     */
+
+    public void setHinted(boolean hinted) {
+    	setBackground(hinted ? HINT : Color.WHITE);
+    }
+
     /**
      * Getter method for the attribute row.
      * 
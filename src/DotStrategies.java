@@ -0,0 +1,49 @@
+import java.util.Random;
+
+/**
+ * The class <b>DotStrategies</b> creates the built-in <b>DotStrategy</b> implementations
+ * by name, and holds the helpers they share.
+ */
+public final class DotStrategies {
+
+    /**
+     * Names of the built-in strategies, the first one being the default
+     */
+    public static final String[] NAMES = {
+        BfsDotStrategy.NAME, EscapeCountDotStrategy.NAME, LookaheadDotStrategy.NAME
+    };
+
+    private DotStrategies() {
+    }
+
+    /**
+     * Creates a strategy
+     *
+     * @param name one of NAMES
+     * @param generator the source of randomness of the strategy
+     * @return a new strategy
+     * @throws IllegalArgumentException if there is no strategy with that name
+     */
+    public static DotStrategy create(String name, Random generator) {
+        if (BfsDotStrategy.NAME.equals(name)) {
+            return new BfsDotStrategy(generator);
+        }
+        if (EscapeCountDotStrategy.NAME.equals(name)) {
+            return new EscapeCountDotStrategy(generator);
+        }
+        if (LookaheadDotStrategy.NAME.equals(name)) {
+            return new LookaheadDotStrategy(generator);
+        }
+        throw new IllegalArgumentException("Unknown dot strategy: " + name);
+    }
+
+    /**
+     * Marks the cells the blue dot cannot step on: every cell that is not AVAILABLE
+     *
+     * @param model the game
+     * @param blocked an array of size*size booleans, indexed by cell (see Cells)
+     */
+    public static void fillBlocked(GameModel model, boolean[] blocked) {
+        model.fillBlocked(blocked);
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * A <b>DotStrategy</b> decides where the blue dot goes after each move of the player.
+ * Implementations may keep buffers from one call to the next, so an instance must
+ * only be used by one game (and one thread) at a time.
+ *
+ * Every strategy runs in O(N^2) per move on an N by N board.
+ */
+public interface DotStrategy {
+
+    /**
+     * Chooses the next location of the blue dot. The dot is not on the border.
+     *
+     * @param model the current state of the game, not modified
+     * @param deadline the System.nanoTime() value by which the answer is needed;
+     *            strategies that can trade time for quality stop refining then
+     * @return the cell (see Cells) the dot moves to, or Cells.NONE if it is
+     *            encircled and cannot exit
+     */
+    public int nextMove(GameModel model, long deadline);
+
+    /**
+     * Getter for the name used to select the strategy on the command line
+     *
+     * @return the name of the strategy
+     */
+    public String getName();
+}
@@ -0,0 +1,301 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InvocationEvent;
+import java.awt.event.PaintEvent;
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <b>EdtWatchdog</b> measures how long each event keeps the Swing event
+ * dispatch thread (EDT) busy: the clicks handled by GameController.actionPerformed, the
+ * repaints of the board, and everything else going through the event queue. When the
+ * handling of an event takes more than a threshold (16 ms, one display frame, by default),
+ * a report is written to a rolling log with the size of the board, the move number and
+ * samples of the stack of the EDT taken while the handler was running.
+ *
+ * It costs two calls to System.nanoTime() and a small object per event, plus a daemon
+ * thread waking up every half threshold, so it can stay on during normal play. The stack
+ * of the EDT is only sampled when a handler is already late.
+ *
+ * A handler that opens a modal dialog runs a nested event loop until the dialog is closed;
+ * only the time it took before the nested loop started is counted.
+ *
+ * Configured with -Dwatchdog=false (off), -Dwatchdog.threshold=MILLIS,
+ * -Dwatchdog.log=FILE and -Dwatchdog.bytes=N (size of the log before it is rolled over
+ * to FILE.1).
+ */
+public class EdtWatchdog {
+
+    /**
+     * Handlers taking longer than this are reported, in milliseconds
+     */
+    public static final long THRESHOLD_MILLIS = Long.getLong("watchdog.threshold", 16);
+
+    private static final String LOG_FILE = System.getProperty("watchdog.log", "edt-watchdog.log");
+    private static final long LOG_BYTES = Long.getLong("watchdog.bytes", 1024 * 1024);
+
+    /**
+     * Most stack samples kept per slow handler, and deepest frames written per sample
+     */
+    private static final int MAX_SAMPLES = 8;
+    private static final int MAX_FRAMES = 24;
+
+    /**
+     * Reports waiting to be written; if the writer cannot keep up, new ones are dropped
+     */
+    private static final int MAX_PENDING = 256;
+
+    private static volatile EdtWatchdog installed;
+
+    private final long threshold = TimeUnit.MILLISECONDS.toNanos(THRESHOLD_MILLIS);
+    private final File log;
+    private final BlockingQueue<Dispatch> slow = new ArrayBlockingQueue<Dispatch>(MAX_PENDING);
+
+    /**
+     * The event being dispatched by the EDT, null between two events
+     */
+    private volatile Dispatch current;
+
+    /**
+     * The position being played, as last given to position()
+     */
+    private volatile int boardSize;
+    private volatile int moveNumber;
+
+    private volatile int dropped;
+
+    /**
+     * The dispatch of one event
+     */
+    private static class Dispatch {
+        final AWTEvent event;
+        final Thread thread;
+        final long start;
+        final List<Sample> samples = new ArrayList<Sample>(0);
+        volatile String handler;
+        volatile long nestedAt;
+        long end;
+        int boardSize;
+        int moveNumber;
+
+        Dispatch(AWTEvent event, Thread thread, long start) {
+            this.event = event;
+            this.thread = thread;
+            this.start = start;
+        }
+
+        long duration() {
+            return ((nestedAt != 0) ? nestedAt : end) - start;
+        }
+    }
+
+    /**
+     * A stack of the EDT, taken some time after the start of a dispatch
+     */
+    private static class Sample {
+        final long elapsed;
+        final StackTraceElement[] stack;
+
+        Sample(long elapsed, StackTraceElement[] stack) {
+            this.elapsed = elapsed;
+            this.stack = stack;
+        }
+    }
+
+    /**
+     * The event queue of the application, replaced by install()
+     */
+    private class WatchedQueue extends EventQueue {
+        protected void dispatchEvent(AWTEvent event) {
+            long start = System.nanoTime();
+            Dispatch outer = current;
+            if (outer != null && outer.nestedAt == 0) {
+                outer.nestedAt = start;
+            }
+            Dispatch dispatch = new Dispatch(event, Thread.currentThread(), start);
+            current = dispatch;
+            try {
+                super.dispatchEvent(event);
+            }
+            finally {
+                dispatch.end = System.nanoTime();
+                current = outer;
+                if (dispatch.duration() > threshold) {
+                    dispatch.boardSize = boardSize;
+                    dispatch.moveNumber = moveNumber;
+                    if (!slow.offer(dispatch)) {
+                        dropped++;
+                    }
+                }
+            }
+        }
+    }
+
+    private EdtWatchdog(File log) {
+        this.log = log;
+    }
+
+    /**
+     * Replaces the event queue of the application with one timing every event, and starts
+     * the thread sampling the EDT and writing the log. Does nothing if the watchdog is
+     * already installed, or was turned off with -Dwatchdog=false
+     */
+    public static synchronized void install() {
+        if (installed != null || !Boolean.parseBoolean(System.getProperty("watchdog", "true"))) {
+            return;
+        }
+        final EdtWatchdog watchdog = new EdtWatchdog(new File(LOG_FILE));
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog.new WatchedQueue());
+        Thread watcher = new Thread("edt-watchdog") {
+            public void run() {
+                watchdog.watch();
+            }
+        };
+        watcher.setDaemon(true);
+        watcher.setPriority(Thread.MAX_PRIORITY);
+        watcher.start();
+        installed = watchdog;
+    }
+
+    /**
+     * Names the handler of the event being dispatched, for the reports. Must be called on
+     * the EDT; does nothing if the watchdog is not installed
+     *
+     * @param handler the name of the handler
+     */
+    public static void label(String handler) {
+        EdtWatchdog watchdog = installed;
+        if (watchdog != null) {
+            Dispatch dispatch = watchdog.current;
+            if (dispatch != null && dispatch.thread == Thread.currentThread()) {
+                dispatch.handler = handler;
+            }
+        }
+    }
+
+    /**
+     * Gives the position being played, for the reports. Does nothing if the watchdog is
+     * not installed
+     *
+     * @param size the size of the board
+     * @param move the number of moves played
+     */
+    public static void position(int size, int move) {
+        EdtWatchdog watchdog = installed;
+        if (watchdog != null) {
+            watchdog.boardSize = size;
+            watchdog.moveNumber = move;
+        }
+    }
+
+    /**
+     * Body of the watcher thread: every half threshold, samples the stack of the EDT if the
+     * event it dispatches is late, and writes the reports of the slow events
+     */
+    private void watch() {
+        long period = Math.max(1, THRESHOLD_MILLIS / 2);
+        while (true) {
+            Dispatch finished;
+            try {
+                finished = slow.poll(period, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            Dispatch dispatch = current;
+            if (dispatch != null && dispatch.nestedAt == 0) {
+                long elapsed = System.nanoTime() - dispatch.start;
+                if (elapsed > threshold) {
+                    synchronized (dispatch.samples) {
+                        if (dispatch.samples.size() < MAX_SAMPLES) {
+                            dispatch.samples.add(new Sample(elapsed, dispatch.thread.getStackTrace()));
+                        }
+                    }
+                }
+            }
+            if (finished != null) {
+                write(finished);
+            }
+        }
+    }
+
+    /**
+     * Helper method: appends the report of a slow event to the log, rolling the log over
+     * once it is larger than LOG_BYTES. Errors are ignored: the watchdog must not disturb
+     * the game
+     */
+    private void write(Dispatch dispatch) {
+        StringBuilder report = new StringBuilder();
+        report.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date()))
+                .append(" slow ").append(describe(dispatch))
+                .append(String.format(": %.1f ms", dispatch.duration() / 1e6));
+        if (dispatch.nestedAt != 0) {
+            report.append(" before a nested event loop");
+        }
+        report.append(", board ").append(dispatch.boardSize).append('x')
+                .append(dispatch.boardSize).append(", move ").append(dispatch.moveNumber);
+        int lost = dropped;
+        if (lost > 0) {
+            dropped = 0;
+            report.append(", ").append(lost).append(" earlier reports dropped");
+        }
+        report.append('\n');
+        synchronized (dispatch.samples) {
+            for (Sample sample : dispatch.samples) {
+                report.append(String.format("  EDT stack at %.1f ms:%n", sample.elapsed / 1e6));
+                int frames = Math.min(MAX_FRAMES, sample.stack.length);
+                for (int i = 0; i < frames; i++) {
+                    report.append("    at ").append(sample.stack[i]).append('\n');
+                }
+                if (frames < sample.stack.length) {
+                    report.append("    ... ").append(sample.stack.length - frames)
+                            .append(" more\n");
+                }
+            }
+        }
+
+        try {
+            if (log.length() > LOG_BYTES) {
+                File previous = new File(log.getPath() + ".1");
+                previous.delete();
+                log.renameTo(previous);
+            }
+            Writer out = new OutputStreamWriter(new FileOutputStream(log, true), "UTF-8");
+            try {
+                out.write(report.toString());
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch (IOException e) {
+            // no report rather than a broken game
+        }
+    }
+
+    /**
+     * Helper method: the name of the handler of an event, as given to label(), or else
+     * guessed from the event
+     */
+    private static String describe(Dispatch dispatch) {
+        if (dispatch.handler != null) {
+            return dispatch.handler;
+        }
+        AWTEvent event = dispatch.event;
+        if (event instanceof PaintEvent
+                || (event instanceof InvocationEvent
+                    && event.toString().contains("RepaintManager"))) {
+            return "repaint";
+        }
+        String source = (event.getSource() == null) ? ""
+                : " on " + event.getSource().getClass().getSimpleName();
+        return event.getClass().getSimpleName() + " " + event.getID() + source;
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.Random;
+
+/**
+ * The class <b>EscapeCountDotStrategy</b> moves the blue dot along a shortest path to the
+ * border, like <b>BfsDotStrategy</b>, but among the neighbours that are on a shortest path
+ * it prefers the one with the most shortest escape routes, which is the hardest one for
+ * the player to cut. Remaining ties are broken at random.
+ */
+public class EscapeCountDotStrategy implements DotStrategy {
+
+    public static final String NAME = "escape";
+
+    private final EscapeMap map = new EscapeMap();
+    private final int[] around = new int[Cells.MAX_NEIGHBOURS];
+    private boolean[] blocked;
+    private final Random generator;
+
+    /**
+     * Constructor
+     *
+     * @param generator the source of randomness used to break ties
+     */
+    public EscapeCountDotStrategy(Random generator) {
+        this.generator = generator;
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public int nextMove(GameModel model, long deadline) {
+        int size = model.getSize();
+        if (blocked == null || blocked.length != size * size) {
+            blocked = new boolean[size * size];
+        }
+        DotStrategies.fillBlocked(model, blocked);
+        map.compute(blocked, size);
+        return bestNeighbour(model.getCurrentDotCell(), size, blocked, map, around, generator);
+    }
+
+    /**
+     * Picks the neighbour of the dot that is closest to the exit, then the one with the
+     * most escape routes. An open border cell is always taken.
+     *
+     * @param dot the cell of the dot, not on the border
+     * @param size the size of the board
+     * @param blocked the cells the dot cannot step on
+     * @param map the escape map of the board
+     * @param around a buffer of Cells.MAX_NEIGHBOURS ints
+     * @param generator the source of randomness used to break ties
+     * @return the chosen cell, or Cells.NONE if the dot cannot reach the border
+     */
+    static int bestNeighbour(int dot, int size, boolean[] blocked, EscapeMap map,
+            int[] around, Random generator) {
+        Cells.neighbours(dot, size, around);
+        int best = Cells.NONE;
+        int bestDistance = EscapeMap.UNREACHABLE;
+        long bestRoutes = 0;
+        int ties = 0;
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            int n = around[k];
+            if (blocked[n]) {
+                continue;
+            }
+            int distance = Cells.isOnBorder(n, size) ? 0 : map.getDistance(n);
+            long routes = Cells.isOnBorder(n, size) ? 1 : map.getRoutes(n);
+            if (distance == EscapeMap.UNREACHABLE) {
+                continue;
+            }
+            if (distance < bestDistance || (distance == bestDistance && routes > bestRoutes)) {
+                best = n;
+                bestDistance = distance;
+                bestRoutes = routes;
+                ties = 1;
+            }
+            else if (distance == bestDistance && routes == bestRoutes
+                    && generator.nextInt(++ties) == 0) {
+                // reservoir sampling among equally good neighbours
+                best = n;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * The class <b>EscapeMap</b> computes, for every interior cell of the board, its distance
+ * to the exit and the number of distinct shortest escape routes starting from it. It does
+ * a ``breadth-first'' search backwards from the exits, layer by layer, adding up the
+ * number of routes of the previous layer (counting BFS).
+ *
+ * A cell at distance 1 is an interior cell next to an available border cell; the dot
+ * standing there exits in one more move. Border cells themselves are not part of the map.
+ */
+public class EscapeMap {
+
+    /**
+     * Distance of the cells that cannot reach the border
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Route counts saturate at this value
+     */
+    private static final long MAX_ROUTES = Long.MAX_VALUE / 8;
+
+    private int size;
+    private int[] distance;
+    private long[] routes;
+    private int[] queue;
+    private final int[] around = new int[Cells.MAX_NEIGHBOURS];
+
+    /**
+     * Computes the map of a board
+     *
+     * @param blocked blocked[cell] is true for the cells the dot cannot step on
+     * @param size the size of the board
+     */
+    public void compute(boolean[] blocked, int size) {
+        this.size = size;
+        int cells = size * size;
+        if (distance == null || distance.length != cells) {
+            distance = new int[cells];
+            routes = new long[cells];
+            queue = new int[cells];
+        }
+
+        // first layer: the interior cells next to an open exit
+        int rear = 0;
+        for (int x = 1; x < size - 1; x++) {
+            for (int y = 1; y < size - 1; y++) {
+                int cell = Cells.index(x, y, size);
+                distance[cell] = UNREACHABLE;
+                routes[cell] = 0;
+                if (blocked[cell]) {
+                    continue;
+                }
+                Cells.neighbours(cell, size, around);
+                for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+                    if (!blocked[around[k]] && Cells.isOnBorder(around[k], size)) {
+                        routes[cell]++;
+                    }
+                }
+                if (routes[cell] > 0) {
+                    distance[cell] = 1;
+                    queue[rear++] = cell;
+                }
+            }
+        }
+
+        int front = 0;
+        while (front < rear) {
+            int cell = queue[front++];
+            int next = distance[cell] + 1;
+            Cells.neighbours(cell, size, around);
+            for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+                int n = around[k];
+                if (blocked[n] || Cells.isOnBorder(n, size)) {
+                    continue;
+                }
+                if (distance[n] == UNREACHABLE) {
+                    distance[n] = next;
+                    routes[n] = routes[cell];
+                    queue[rear++] = n;
+                }
+                else if (distance[n] == next) {
+                    routes[n] = Math.min(MAX_ROUTES, routes[n] + routes[cell]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Getter for the distance of an interior cell to the exit
+     *
+     * @param cell an interior cell
+     * @return the number of moves the dot needs to reach the border, or UNREACHABLE
+     */
+    public int getDistance(int cell) {
+        return distance[cell];
+    }
+
+    /**
+     * Getter for the number of shortest escape routes of an interior cell
+     *
+     * @param cell an interior cell
+     * @return the number of shortest routes to the border (saturating), 0 if unreachable
+     */
+    public long getRoutes(int cell) {
+        return routes[cell];
+    }
+}
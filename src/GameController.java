@@ -1,9 +1,13 @@
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.*;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 
 /**
@@ -15,10 +19,91 @@ import javax.swing.*;
  */
 
 
-public class GameController implements ActionListener {
+public class GameController implements ActionListener, ChangeListener {
 
-    private LinkedStack<GameModel> redoStack;
-    private LinkedStack<GameModel> undoStack;
+    /**
+     * Number of undo/redo states kept in memory before older ones are spilled to disk.
+     * Can be overridden with -Dhistory.entries=N and -Dhistory.bytes=N
+     */
+    private static final int HISTORY_ENTRIES = Integer.getInteger("history.entries", 128);
+    private static final long HISTORY_BYTES = Long.getLong("history.bytes", 64L * 1024 * 1024);
+
+    /**
+     * File every move is appended to (see GameRecordWriter), if set with -Dexport.file=FILE.
+     * Chunks are deflated with -Dexport.deflate=true
+     */
+    private static final String EXPORT_FILE = System.getProperty("export.file");
+
+    /**
+     * Difficulty of the new games (see BoardGenerator.Profile), if set with
+     * -Dboard.profile=PROFILE, for instance -Dboard.profile=cut=3-4,moves=20
+     */
+    private static final String BOARD_PROFILE = System.getProperty("board.profile");
+    private static final int POOL_CAPACITY = 16;
+
+    /**
+     * Number of blue dots of the new games, 1 unless set with -Ddots=N (see
+     * GameModel.maxDots). Games with several dots do not use the board profile
+     */
+    private static final int DOTS = Integer.getInteger("dots", 1);
+
+    /**
+     * The save file, -Dsave.file=FILE, and the interval between two autosaves in seconds,
+     * -Dautosave.seconds=N (0 saves on Quit only)
+     */
+    private static final String SAVE_FILE = System.getProperty("save.file", "savedGame.ser");
+    private static final int AUTOSAVE_SECONDS = Integer.getInteger("autosave.seconds", 30);
+
+    /**
+     * Writes the saves in the background
+     */
+    private GameSaver saver;
+    private Timer autosave;
+
+    /**
+     * The save slots (Save and Load buttons), -Dsave.slots=PATH without extension (see
+     * SaveSlotStore). Opened on first use
+     */
+    private static final String SAVE_SLOTS = System.getProperty("save.slots",
+            "saves" + File.separator + "circle-the-dot");
+    private SaveSlotStore slots;
+
+    /**
+     * Precomputes the replies of the blue dot while the player thinks; null if turned off
+     * (see Speculator)
+     */
+    private Speculator speculator;
+
+    /**
+     * True once the current game is won or lost: there is nothing to save
+     */
+    private boolean gameOver;
+
+    private HistoryStack redoStack;
+    private HistoryStack undoStack;
+
+    /**
+     * Record of the current line of play, used to jump to any earlier move
+     */
+    private GameTimeline timeline;
+
+    /**
+     * The rules of the game, including the strategy of the blue dot
+     */
+    private GameEngine engine;
+
+    /**
+     * Where the moves are exported, null if they are not. The games of the GUI have no
+     * seed, so they are recorded under a random identifier drawn at each new game
+     */
+    private GameRecordWriter records;
+    private long gameId;
+
+    /**
+     * Boards of the difficulty asked for, ready to be played; null if new games are
+     * drawn at random
+     */
+    private BoardPool boards;
 
     /**
      * Reference to the view of the game
@@ -39,11 +124,93 @@ public class GameController implements ActionListener {
      *            the size of the board on which the game will be played
      */
     public GameController(int size) {
-        gameModel = createOrLoadModel(size);
-        gameView = new GameView(gameModel, this);
-        redoStack = new LinkedStack<GameModel>();
-        undoStack = new LinkedStack<GameModel>();
-        gameView.update();
+        this(size, new BfsDotStrategy(new Random()), 0);
+    }
+
+    /**
+     * Constructor used for initializing the controller with a given behaviour of the blue dot.
+     * Must be called on the event dispatch thread. The window is shown right away; the model
+     * is created (or loaded) on a background thread, and the board is attached to the
+     * window once it is ready. Until then, only the Quit button does something
+     *
+     * @param size
+     *            the size of the board on which the game will be played
+     * @param dotStrategy
+     *            the strategy of the blue dot
+     * @param timeBudget
+     *            the time (in milliseconds) the strategy is given per move, 0 for no limit
+     */
+    public GameController(final int size, DotStrategy dotStrategy, long timeBudget) {
+        engine = new GameEngine(dotStrategy, timeBudget);
+        if (Speculator.ENABLED) {
+            try {
+                speculator = new Speculator(dotStrategy.getName(), timeBudget);
+            }
+            catch (IllegalArgumentException e) {
+                // a strategy DotStrategies cannot create: no speculation
+            }
+        }
+        gameView = new GameView(size, this);
+        redoStack = new HistoryStack(HISTORY_ENTRIES, HISTORY_BYTES);
+        undoStack = new HistoryStack(HISTORY_ENTRIES, HISTORY_BYTES);
+        openBoardPool(size);
+        saver = new GameSaver(new File(SAVE_FILE), new GameSaver.Listener() {
+            public void saveFailed(IOException e) {
+                displayError("Error saving to file.");
+            }
+        });
+        new SwingWorker<GameModel, Void>() {
+            protected GameModel doInBackground() {
+                return createOrLoadModel(size);
+            }
+
+            protected void done() {
+                GameModel model;
+                try {
+                    model = get();
+                }
+                catch (Exception e) {
+                    displayError("Error creating the game.");
+                    model = new GameModel(size);
+                }
+                attachModel(model);
+            }
+        }.execute();
+    }
+
+    /**
+     * Shows the model created at startup, and starts the game once its board is complete
+     *
+     * @param model the model of the game
+     */
+    private void attachModel(final GameModel model) {
+        timeline = new GameTimeline(model);
+        openRecords();
+        gameView.attachModel(model, new Runnable() {
+            public void run() {
+                gameModel = model;
+                updateHistoryControls();
+                gameView.update();
+                StartupMetrics.boardReady(model.getSize());
+                startAutosave();
+            }
+        });
+    }
+
+    /**
+     * Saves the game every AUTOSAVE_SECONDS, if autosave is on. The timer only hands the
+     * current snapshot to the saver, the save itself is written in the background
+     */
+    private void startAutosave() {
+        if (AUTOSAVE_SECONDS <= 0) {
+            return;
+        }
+        autosave = new Timer(AUTOSAVE_SECONDS * 1000, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                writeObject();
+            }
+        });
+        autosave.start();
     }
 
 
@@ -52,13 +219,36 @@ public class GameController implements ActionListener {
      * resets the game
      */
     public void reset(){
-        redoStack = new LinkedStack<>();
-        undoStack = new LinkedStack<>();
-        gameModel.reset();
+        redoStack.clear();
+        undoStack.clear();
+        if (boards != null && boards.getSize() == gameModel.getSize()) {
+            try {
+                GameModel board = boards.poll();
+                if (board != null) {
+                    gameModel = board;
+                    gameView.setModel(gameModel);
+                }
+                else {
+                    // none ready yet: a random board, rather than generating one here on
+                    // the event dispatch thread
+                    gameModel.reset();
+                }
+            }
+            catch (IllegalStateException e) {
+                boards = null;
+                displayError("No board of the difficulty asked for, playing random boards.");
+                gameModel.reset();
+            }
+        }
+        else {
+            gameModel.reset();
+        }
+        timeline.restart(gameModel);
+        gameId = new Random().nextLong();
+        gameOver = false;
 
-        gameView.disableUndoButton();
-        gameView.disableRedoButton();
-        gameView.update();
+        updateHistoryControls();
+        gameView.scheduleUpdate();
     }
 
     /**
@@ -70,24 +260,33 @@ public class GameController implements ActionListener {
      */
 
     public void actionPerformed(ActionEvent e) {
-        
+        EdtWatchdog.label("GameController.actionPerformed");
+        if (gameModel == null) {
+            // still starting
+            if (e.getSource() instanceof JButton
+                    && ((JButton) e.getSource()).getText().equals("Quit")) {
+                System.exit(0);
+            }
+            return;
+        }
+
         if (e.getSource() instanceof DotButton) {
             DotButton clicked = (DotButton)(e.getSource());
 
         	if (gameModel.getCurrentStatus(clicked.getColumn(),clicked.getRow()) ==
                     GameModel.AVAILABLE){
                 pushToUndoStack(gameModel);
-                gameModel.select(clicked.getColumn(),clicked.getRow());
-                oneStep();
+                oneStep(clicked.getColumn(),clicked.getRow());
             }
         } else if (e.getSource() instanceof JButton) {
             JButton clicked = (JButton)(e.getSource());
 
             if (clicked.getText().equals("Quit")) {
-                if (gameModel.getCurrentDot().getX() != -1) {
-                    writeObject();
-                }
-                 System.exit(0);
+                // the save is written by the shutdown hook of the saver, after the window
+                // is gone
+                writeObject();
+                gameView.dispose();
+                System.exit(0);
             }
             else if (clicked.getText().equals("Reset")){
                 reset();
@@ -98,28 +297,65 @@ public class GameController implements ActionListener {
             else if (clicked.getText().equals("Redo")) {
                 redo();
             }
+            else if (clicked.getText().equals("Save")) {
+                saveToSlot();
+            }
+            else if (clicked.getText().equals("Load")) {
+                loadFromSlot();
+            }
+            else if (clicked.getText().equals("Hint")) {
+                hint();
+            }
         } 
     }
 
     /**
-     * Computes the next step of the game. If the player has lost, it 
+     * Plays the player's move and computes the next step of the game. If the player has lost, it 
      * shows a dialog offering to replay.
      * If the user has won, it shows a dialog showing the number of 
      * steps that had been required in order to win. 
-     * Else, it finds one of the shortest path for the blue dot to 
-     * exit the board and moves it one step in that direction.
+     * Else, the blue dot has moved one step toward the exit (see GameEngine).
+     *
+     * @param selectedX the x coordinate of the dot the player selected
+     * @param selectedY the y coordinate of the dot the player selected
      */
-    private void oneStep(){
-        Point currentDot = gameModel.getCurrentDot();
+    private void oneStep(int selectedX, int selectedY){
+        int reply = GameEngine.UNKNOWN_REPLY;
+        if (speculator != null) {
+            reply = speculator.reply(gameModel.getHash(),
+                    Cells.index(selectedX, selectedY, gameModel.getSize()));
+            speculator.cancel();
+        }
+        int result = engine.play(gameModel, selectedX, selectedY, reply);
+        if(result == GameEngine.ILLEGAL){
+            return;
+        }
+        gameOver = result != GameEngine.PLAYING;
 
         // Destroys old redoStack on new move.
-        redoStack = new LinkedStack<>();
-        gameView.disableRedoButton();
+        redoStack.clear();
+        recordMove(selectedX, selectedY, result);
 
-        if(isOnBorder(currentDot)) {
-            gameModel.setCurrentDot(-1,-1);
+        int size = gameModel.getSize();
+        int currentDot = gameModel.getCurrentDotCell();
+        if(result == GameEngine.LOST) {
+            timeline.record(gameModel, selectedX, selectedY, -1, -1);
+        }
+        else {
+            timeline.record(gameModel, selectedX, selectedY,
+                    Cells.x(currentDot, size), Cells.y(currentDot, size));
+        }
+        updateHistoryControls();
+        if(result == GameEngine.PLAYING) {
+            gameView.scheduleUpdate();
+        }
+        else {
+            // the final position is shown before the dialog
             gameView.update();
- 
+            saver.discard();
+        }
+
+        if(result == GameEngine.LOST) {
             Object[] options = {"Play Again",
                     "Quit"};
             int n = JOptionPane.showOptionDialog(gameView,
@@ -137,198 +373,243 @@ public class GameController implements ActionListener {
                 System.exit(0);
             }
         }
-        else {
-            Point direction = findDirection();
-            if(direction.getX() == -1){
-                gameView.update();
-                Object[] options = {"Play Again",
-                        "Quit"};
-                int n = JOptionPane.showOptionDialog(gameView,
-                        "Congratulations, you won in " + gameModel.getNumberOfSteps()
-                            +" steps!\n Would you like to play again?",
-                        "Won",
-                        JOptionPane.YES_NO_OPTION,
-                        JOptionPane.QUESTION_MESSAGE,
-                        null,
-                        options,
-                        options[0]);
-                if(n == 0) {
-                    reset();
-                }
-                else {
-                    System.exit(0);
-                }
+        else if(result == GameEngine.WON){
+            Object[] options = {"Play Again",
+                    "Quit"};
+            int n = JOptionPane.showOptionDialog(gameView,
+                    "Congratulations, you won in " + gameModel.getNumberOfSteps()
+                        +" steps!\n Would you like to play again?",
+                    "Won",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.QUESTION_MESSAGE,
+                    null,
+                    options,
+                    options[0]);
+            if(n == 0) {
+                reset();
             }
             else {
-
-                gameModel.setCurrentDot(direction.getX(), direction.getY());
-                gameView.update();
+                System.exit(0);
             }
         }
     }
 
     /**
-     * Does a ``breadth-first'' search from the current location of the blue dot to find
-     * one of the shortest available path to exit the board. 
-     *
-     * @return the location (as a Point) of the next step for the blue dot toward the exit.
-     * If the blue dot is encircled and cannot exit, returns an instance of the class Point 
-     * at location (-1,-1)
+     * Asks for a name and saves the current game in a new slot, in the background
      */
-
-    private Point findDirection(){
-        boolean[][] blocked = new boolean[gameModel.getSize()][gameModel.getSize()];
-
-        for(int i = 0; i < gameModel.getSize(); i ++){
-            for (int j = 0; j < gameModel.getSize(); j ++){
-                blocked[i][j] = 
-                    !(gameModel.getCurrentStatus(i,j) == GameModel.AVAILABLE);
-            }
+    private void saveToSlot() {
+        final SaveSlotStore store = openSlots();
+        if (store == null) {
+            return;
         }
+        final String name = JOptionPane.showInputDialog(gameView, "Name of the save:",
+                "Move " + gameModel.getNumberOfSteps());
+        if (name == null) {
+            return;
+        }
+        final BoardSnapshot snapshot = gameModel.getSnapshot();
+        new SwingWorker<Integer, Void>() {
+            protected Integer doInBackground() throws IOException {
+                return store.add(snapshot, name);
+            }
 
-        Queue<Pair<Point>> myQueue = new LinkedQueue<Pair<Point>>();
-        
-        LinkedList<Point> possibleNeighbours = new LinkedList<Point>();
-
-        // start with neighbours of the current dot
-        // (note: we know the current dot isn't on the border)
-        Point currentDot = gameModel.getCurrentDot();
-
-        possibleNeighbours = findPossibleNeighbours(currentDot, blocked);
-
-        // adding some non determinism into the game !
-        java.util.Collections.shuffle(possibleNeighbours);
+            protected void done() {
+                try {
+                    get();
+                }
+                catch (Exception e) {
+                    displayError("Error saving to slot.");
+                }
+            }
+        }.execute();
+    }
 
-        for(int i = 0; i < possibleNeighbours.size() ; i++){
-            Point p = possibleNeighbours.get(i);
-            if(isOnBorder(p)){
-                return p;                
+    /**
+     * Lists the saved games of the size of the board, and loads the one chosen in the
+     * background. The undo and redo stacks and the timeline start over from it
+     */
+    private void loadFromSlot() {
+        final SaveSlotStore store = openSlots();
+        if (store == null) {
+            return;
+        }
+        List<SaveSlotStore.Slot> saved = new ArrayList<SaveSlotStore.Slot>();
+        for (SaveSlotStore.Slot slot : store.list()) {
+            if (slot.getSize() == gameModel.getSize()) {
+                saved.add(slot);
             }
-            myQueue.enqueue(new Pair<Point>(p,p));
-            blocked[p.getX()][p.getY()] = true;
         }
+        if (saved.isEmpty()) {
+            displayError("No saved game of this size.");
+            return;
+        }
+        Object[] choices = saved.toArray();
+        final SaveSlotStore.Slot chosen = (SaveSlotStore.Slot) JOptionPane.showInputDialog(
+                gameView, "Saved games:", "Load", JOptionPane.PLAIN_MESSAGE, null, choices,
+                choices[choices.length - 1]);
+        if (chosen == null) {
+            return;
+        }
+        new SwingWorker<GameModel, Void>() {
+            protected GameModel doInBackground() throws IOException {
+                return store.load(chosen.getIndex());
+            }
 
-
-        // start the search
-        while(!myQueue.isEmpty()){
-            Pair<Point> pointPair = myQueue.dequeue();
-            possibleNeighbours = findPossibleNeighbours(pointPair.getFirst(), blocked);
-             
-            for(int i = 0; i < possibleNeighbours.size() ; i++){
-                Point p = possibleNeighbours.get(i);
-                if(isOnBorder(p)){
-                    return pointPair.getSecond();                
+            protected void done() {
+                GameModel loaded;
+                try {
+                    loaded = get();
                 }
-                myQueue.enqueue(new Pair<Point>(p,pointPair.getSecond()));
-                blocked[p.getX()][p.getY()]=true;
+                catch (Exception e) {
+                    displayError("Error loading the save.");
+                    return;
+                }
+                undoStack.clear();
+                redoStack.clear();
+                gameModel = loaded;
+                gameView.setModel(gameModel);
+                timeline.restart(gameModel);
+                gameId = new Random().nextLong();
+                gameOver = false;
+                updateHistoryControls();
+                gameView.scheduleUpdate();
             }
-
-       }
-
-        // could not find a way out. Return an outside direction
-        return new Point(-1,-1);
-
+        }.execute();
     }
 
-   /**
-     * Helper method: checks if a point is on the border of the board
-     *
-     * @param p
-     *            the point to check
+    /**
+     * Opens the save slots, the first time they are used
      *
-     * @return true iff p is on the border of the board
+     * @return the store, or null if it cannot be opened
      */
-     
-    private boolean isOnBorder(Point p){
-        return (p.getX() == 0 || p.getX() == gameModel.getSize() - 1 ||
-                p.getY() == 0 || p.getY() == gameModel.getSize() - 1 );
+    private SaveSlotStore openSlots() {
+        if (slots == null) {
+            try {
+                slots = new SaveSlotStore(new File(SAVE_SLOTS));
+            }
+            catch (IOException e) {
+                displayError("Cannot open the saved games in " + SAVE_SLOTS + ".");
+            }
+        }
+        return slots;
     }
 
-   /**
-     * Helper method: find the list of direct neighbours of a point that are not
-     * currenbtly blocked
-     *
-     * @param point
-     *            the point to check
-     * @param blocked
-     *            a 2 dimentionnal array of booleans specifying the points that 
-     *              are currently blocked
+    /**
+     * Starts generating boards of the difficulty asked for, if one was given
      *
-     * @return an instance of a LinkedList class, holding a list of instances of 
-     *      the class Points representing the neighbours of parameter point that 
-     *      are not currently blocked.
+     * @param size the size of the boards
      */
-    private LinkedList<Point> findPossibleNeighbours(Point point, 
-            boolean[][] blocked){
+    private void openBoardPool(int size) {
+        if (BOARD_PROFILE == null || DOTS != 1) {
+            return;
+        }
+        try {
+            boards = new BoardPool(new BoardGenerator(Runtime.getRuntime().availableProcessors()),
+                    size, BoardGenerator.Profile.parse(BOARD_PROFILE), POOL_CAPACITY);
+        }
+        catch (IllegalArgumentException e) {
+            displayError("Invalid board profile " + BOARD_PROFILE + ", playing random boards.");
+        }
+    }
 
-        LinkedList<Point> list = new LinkedList<Point>();
-        int delta = (point.getY() %2 == 0) ? 1 : 0;
-        if(!blocked[point.getX()-delta][point.getY()-1]){
-            list.add(new Point(point.getX()-delta, point.getY()-1));
+    /**
+     * Opens the file the moves are exported to, if one was given. It is closed (and its
+     * last chunk written) when the JVM exits
+     */
+    private void openRecords() {
+        if (EXPORT_FILE == null) {
+            return;
         }
-        if(!blocked[point.getX()-delta+1][point.getY()-1]){
-            list.add(new Point(point.getX()-delta+1, point.getY()-1));
+        try {
+            records = new GameRecordWriter(new File(EXPORT_FILE),
+                    Boolean.getBoolean("export.deflate"));
         }
-        if(!blocked[point.getX()-1][point.getY()]){
-            list.add(new Point(point.getX()-1, point.getY()));
+        catch (IOException e) {
+            displayError("Cannot export moves to " + EXPORT_FILE + ".");
+            return;
         }
-        if(!blocked[point.getX()+1][point.getY()]){
-            list.add(new Point(point.getX()+1, point.getY()));
+        gameId = new Random().nextLong();
+        final GameRecordWriter opened = records;
+        Runtime.getRuntime().addShutdownHook(new Thread("records-closer") {
+            public void run() {
+                try {
+                    opened.close();
+                }
+                catch (IOException e) {
+                    // exiting anyway
+                }
+            }
+        });
+    }
+
+    /**
+     * Exports the move just played, if moves are exported
+     */
+    private void recordMove(int selectedX, int selectedY, int result) {
+        if (records == null) {
+            return;
         }
-        if(!blocked[point.getX()-delta][point.getY()+1]){
-            list.add(new Point(point.getX()-delta, point.getY()+1));
+        try {
+            records.record(gameId, gameModel,
+                    Cells.index(selectedX, selectedY, gameModel.getSize()), result);
         }
-        if(!blocked[point.getX()-delta+1][point.getY()+1]){
-            list.add(new Point(point.getX()-delta+1, point.getY()+1));
+        catch (IOException e) {
+            records = null;
+            displayError("Error exporting moves, export stopped.");
         }
-        return list;
     }
 
     /**
-     * Push the current state of the Game Model onto the undo stack
+     * Push the current state of the Game Model onto the undo stack. The stack keeps an
+     * encoded copy, so the model does not need to be cloned. Entries spilled to disk are
+     * written in the background; a failed write shows up when undo reads the entry back
      * @param model The Game Model
      */
     private void pushToUndoStack(GameModel model) {
+        undoStack.push(model);
+    }
 
-        try {
-            GameModel lastModel = (GameModel) model.clone();
-            undoStack.push(lastModel);
-            gameView.enableUndoButton();
+    /**
+     * Highlights the move that circles the blue dot the fastest, as found in the tablebase
+     * of the size of the board (mapped on the first hint, see Tablebase.forSize)
+     */
+    private void hint() {
+        if (gameOver) {
+            return;
         }
-        catch (CloneNotSupportedException e) {
-            JOptionPane.showOptionDialog(gameView,
-                    "Error cloning game state in undo method.",
-                    "Stack Error",
-                    JOptionPane.DEFAULT_OPTION,
-                    JOptionPane.ERROR_MESSAGE,
-                    null,
-                    null,null);
+        Tablebase table = Tablebase.forSize(gameModel.getSize());
+        if (table == null) {
+            displayError("Cannot load " + Tablebase.fileFor(gameModel.getSize()) + ".");
+            return;
         }
-        catch (NullPointerException e) {
-            JOptionPane.showOptionDialog(gameView,
-                    "Error cloning game state in undo method.",
-                    "Stack Error",
-                    JOptionPane.DEFAULT_OPTION,
-                    JOptionPane.ERROR_MESSAGE,
-                    null,
-                    null,null);
+        int cell = table.bestMove(gameModel);
+        if (cell == Cells.NONE) {
+            displayError("The blue dot can escape whatever you play.");
+        }
+        else {
+            gameView.showHint(cell);
         }
     }
 
     /**
      * Revert the Game Model back one previous state. the undo function will also push the state being undone onto
-     * the redo stack
+     * the redo stack. Once the undo stack is exhausted (e.g. after a jump), the previous state is
+     * rebuilt from the timeline
      */
     public void undo() {
         try {
+            GameModel previous;
+            if (undoStack.isEmpty() && gameModel.getNumberOfSteps() > timeline.getFirstStep()) {
+                previous = timeline.modelAt(gameModel.getNumberOfSteps() - 1);
+            }
+            else {
+                previous = undoStack.pop();
+            }
             redoStack.push(gameModel);
-            gameModel = undoStack.pop();
+            gameModel = previous;
             gameView.setModel(gameModel);
-            if (undoStack.isEmpty()) {
-                gameView.disableUndoButton();
-            }
-            gameView.enableRedoButton();
-            gameView.update();
+            updateHistoryControls();
+            gameView.scheduleUpdate();
         } catch (EmptyStackException e) {
             displayError("No moves to undo.");
             gameView.disableUndoButton();
@@ -338,23 +619,31 @@ public class GameController implements ActionListener {
             displayError("No moves to undo.");
             gameView.disableUndoButton();
         }
+        catch (IllegalStateException e) {
+            displayError("Error reading undo history.");
+        }
     }
 
     /**
      * Revert the Game Model to the previously undone state. Redo will also push the current Game Model onto the
-     * undo stack
+     * undo stack. Once the redo stack is exhausted (e.g. after a jump), the next state is rebuilt from the
+     * timeline
      */
     public void redo() {
         try {
+            GameModel next;
+            if (redoStack.isEmpty() && gameModel.getNumberOfSteps() < timeline.getLastStep()) {
+                next = timeline.modelAt(gameModel.getNumberOfSteps() + 1);
+            }
+            else {
+                next = redoStack.pop();
+            }
             undoStack.push(gameModel);
-            gameView.enableUndoButton();
-            gameModel = redoStack.pop();
+            gameModel = next;
 
             gameView.setModel(gameModel);
-            if (redoStack.isEmpty()) {
-                gameView.disableRedoButton();
-            }
-            gameView.update();
+            updateHistoryControls();
+            gameView.scheduleUpdate();
         }
         catch (NullPointerException e) {
             displayError("Cannot push null elements to stack");
@@ -364,24 +653,103 @@ public class GameController implements ActionListener {
             displayError("Error. Stack is empty");
             gameView.disableRedoButton();
         }
+        catch (IllegalStateException e) {
+            displayError("Error reading redo history.");
+        }
+    }
+
+    /**
+     * Callback used when the timeline slider is moved. Jumps to the selected move
+     *
+     * @param e
+     *            the ChangeEvent
+     */
+    public void stateChanged(ChangeEvent e) {
+        if (gameModel != null && e.getSource() instanceof JSlider) {
+            jumpTo(((JSlider) e.getSource()).getValue());
+        }
+    }
+
+    /**
+     * Replaces the Game Model with the position reached after the given number of steps. The
+     * undo and redo stacks are cleared; from there, undo and redo step through the timeline
+     *
+     * @param step the number of steps of the position to show
+     */
+    public void jumpTo(int step) {
+        if (step == gameModel.getNumberOfSteps()
+                || step < timeline.getFirstStep() || step > timeline.getLastStep()) {
+            return;
+        }
+        undoStack.clear();
+        redoStack.clear();
+        gameModel = timeline.modelAt(step);
+        gameView.setModel(gameModel);
+        gameOver = false;
+        updateHistoryControls();
+        gameView.scheduleUpdate();
+    }
+
+    /**
+     * Enables the undo and redo buttons according to the stacks and the timeline, and moves the
+     * timeline slider to the current position
+     */
+    private void updateHistoryControls() {
+        int step = gameModel.getNumberOfSteps();
+        EdtWatchdog.position(gameModel.getSize(), step);
+        if (!undoStack.isEmpty() || step > timeline.getFirstStep()) {
+            gameView.enableUndoButton();
+        }
+        else {
+            gameView.disableUndoButton();
+        }
+        if (!redoStack.isEmpty() || step < timeline.getLastStep()) {
+            gameView.enableRedoButton();
+        }
+        else {
+            gameView.disableRedoButton();
+        }
+        gameView.updateTimeline(timeline.getFirstStep(), timeline.getLastStep(), step);
+
+        // the position changed: guess the next selection while the player thinks
+        if (speculator != null && !gameOver) {
+            speculator.start(gameModel.getSnapshot());
+        }
     }
 
     /**
-     * Checks to see if 'savedgame.ser' exists in the program directory and loads it. If the file does not exist,
-     * a new game is created
+     * Checks to see if the save file exists in the program directory and loads it. If the file does not exist,
+     * a new game is created (of the difficulty set with -Dboard.profile, if any)
      * @param size the size of the game to be created (ignored if loading from save file)
      * @return
      */
     private GameModel createOrLoadModel(int size) {
-        File saveFile = new File("./savedGame.ser");
+        File saveFile = new File(SAVE_FILE);
         if (saveFile.exists()) {
-            gameModel = readObj(saveFile);
+            // the save is kept until the game is over, autosaves replace it meanwhile
+            GameModel model = readObj(saveFile);
+            if (model != null) {
+                return model;
+            }
             saveFile.delete();
-            return gameModel;
         }
-        else {
-            return new GameModel(size);
+        if (boards != null) {
+            try {
+                return boards.take();
+            }
+            catch (IllegalStateException e) {
+                displayError("No board of the difficulty asked for, playing random boards.");
+            }
+        }
+        if (DOTS != 1) {
+            try {
+                return new GameModel(size, DOTS, new Random());
+            }
+            catch (IllegalArgumentException e) {
+                displayError("Invalid number of dots " + DOTS + ", playing with one dot.");
+            }
         }
+        return new GameModel(size);
     }
 
     /**
@@ -392,14 +760,14 @@ public class GameController implements ActionListener {
     private GameModel readObj(File saveFile) {
         try {
             FileInputStream fileIn = new FileInputStream(saveFile);
-            ObjectInputStream in = new ObjectInputStream(fileIn);
-            GameModel model = (GameModel) in.readObject();
+            SaveInputStream in = new SaveInputStream(new BufferedInputStream(fileIn));
+            GameModel model = in.readModel();
 
             fileIn.close();
             in.close();
             return model;
         }
-        catch (ClassNotFoundException e) {
+        catch (InvalidObjectException e) {
             displayError("Error reading file. Data may be corrupted.");
         }
         catch (IOException e) {
@@ -409,18 +777,12 @@ public class GameController implements ActionListener {
     }
 
     /**
-     * Write the current Game Model to 'savedgame.ser'
+     * Saves the current Game Model to the save file, unless the game is over. Returns
+     * right away: the save is written in the background (see GameSaver)
      */
     public void writeObject() {
-        try {
-            FileOutputStream fileOut = new FileOutputStream("./savedgame.ser");
-            ObjectOutputStream out = new ObjectOutputStream(fileOut);
-            out.writeObject(gameModel);
-            out.close();
-            fileOut.close();
-        }
-        catch (IOException e) {
-            displayError("Error saving to file.");
+        if (gameModel != null && !gameOver) {
+            saver.save(gameModel.getSnapshot());
         }
     }
 
@@ -429,7 +791,15 @@ public class GameController implements ActionListener {
      * Utility method for displaying errors and exceptions. Creates a dialog with a custom error message
      * @param message the error message to be displayed
      */
-    private void displayError(String message) {
+    private void displayError(final String message) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    displayError(message);
+                }
+            });
+            return;
+        }
         JOptionPane.showOptionDialog(gameView,
                 message,
                 "Error",
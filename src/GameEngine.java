@@ -0,0 +1,204 @@
+import java.util.Random;
+
+/**
+ * The class <b>GameEngine</b> implements the rules of the game without any user
+ * interface: the player selects a dot, then the blue dot either exits the board (the
+ * player lost), is encircled (the player won) or moves one step as decided by its
+ * <b>DotStrategy</b>. It is shared by the Swing controller and the headless modes.
+ *
+ * The answers of the strategy are kept in a <b>DecisionCache</b> keyed by the position
+ * hash, so a position seen again (undo, redo, replays, transpositions) gets the very move
+ * chosen the first time without searching again. A hit does not ask the strategy, which
+ * then skips the random draws that break its ties, so the later moves of a game depend on
+ * the cache: the same seeds give the same moves with the same cache size, but not with
+ * another size, and not with replies given in advance (see Speculator). The size can be
+ * set with -Ddot.cache (0 disables it).
+ *
+ * In games with several blue dots, all the dots move at once with a
+ * <b>MultiDotSearch</b>, whatever the dot strategy: the player loses as soon as one of
+ * them exits the board, and wins once all of them are encircled.
+ */
+public class GameEngine {
+
+    /**
+     * Possible outcomes of a move
+     */
+    public static final int PLAYING = 0;
+    public static final int WON     = 1;
+    public static final int LOST    = 2;
+    public static final int ILLEGAL = 3;
+
+    /**
+     * Marks a cache miss; Cells.NONE is a valid answer
+     */
+    private static final int NOT_CACHED = Integer.MIN_VALUE;
+
+    /**
+     * Passed to play when the reply of the blue dot is not known in advance
+     */
+    public static final int UNKNOWN_REPLY = Integer.MIN_VALUE;
+
+    /**
+     * Default maximum number of answers kept in the cache
+     */
+    public static final int CACHE_ENTRIES = Integer.getInteger("dot.cache", 4096);
+
+    private final DotStrategy dotStrategy;
+    private final long timeBudget;
+    private final DecisionCache cache;
+    private MultiDotSearch multiDotSearch;
+
+    /**
+     * Constructor
+     *
+     * @param dotStrategy the strategy of the blue dot
+     * @param timeBudget the time (in milliseconds) the strategy is given per move,
+     *            0 for no limit
+     */
+    public GameEngine(DotStrategy dotStrategy, long timeBudget) {
+        this(dotStrategy, timeBudget, CACHE_ENTRIES);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param dotStrategy the strategy of the blue dot
+     * @param timeBudget the time (in milliseconds) the strategy is given per move,
+     *            0 for no limit
+     * @param cacheEntries the maximum number of answers of the strategy kept, 0 for none
+     */
+    public GameEngine(DotStrategy dotStrategy, long timeBudget, int cacheEntries) {
+        this.dotStrategy = dotStrategy;
+        this.timeBudget = timeBudget;
+        this.cache = new DecisionCache(cacheEntries);
+    }
+
+    /**
+     * Plays a move of the player and the reply of the blue dot
+     *
+     * @param model the game, updated in place
+     * @param x the x coordinate of the dot selected by the player
+     * @param y the y coordinate of the dot selected by the player
+     * @return PLAYING, WON, LOST, or ILLEGAL if the dot cannot be selected (the model
+     *            is then left unchanged)
+     */
+    public int play(GameModel model, int x, int y) {
+        return play(model, x, y, UNKNOWN_REPLY);
+    }
+
+    /**
+     * Plays a move of the player and the reply of the blue dot, the reply being already
+     * known (see Speculator). It is remembered in the cache as if it had been searched
+     *
+     * @param model the game, updated in place
+     * @param x the x coordinate of the dot selected by the player
+     * @param y the y coordinate of the dot selected by the player
+     * @param reply the move of the blue dot after this selection (a cell index, or
+     *            Cells.NONE if it is encircled), or UNKNOWN_REPLY to ask the strategy
+     * @return PLAYING, WON, LOST, or ILLEGAL if the dot cannot be selected (the model
+     *            is then left unchanged)
+     */
+    public int play(GameModel model, int x, int y, int reply) {
+        int size = model.getSize();
+        if (x < 0 || x >= size || y < 0 || y >= size
+                || model.getCurrentStatus(x, y) != GameModel.AVAILABLE) {
+            return ILLEGAL;
+        }
+        model.select(x, y);
+
+        if (model.getDotCount() > 1) {
+            return moveDots(model);
+        }
+        if (Cells.isOnBorder(model.getCurrentDotCell(), size)) {
+            model.setCurrentDot(-1, -1);
+            return LOST;
+        }
+        int direction;
+        if (reply == UNKNOWN_REPLY) {
+            direction = findDirection(model);
+        }
+        else {
+            direction = reply;
+            cache.put(cacheKey(model), reply);
+        }
+        if (direction == Cells.NONE) {
+            return WON;
+        }
+        model.setCurrentDot(Cells.x(direction, size), Cells.y(direction, size));
+        return PLAYING;
+    }
+
+    /**
+     * Helper method: the reply of the blue dots in a game with several of them
+     */
+    private int moveDots(GameModel model) {
+        int size = model.getSize();
+        for (int k = 0; k < model.getDotCount(); k++) {
+            int dot = model.getDotCell(k);
+            if (dot != Cells.NONE && Cells.isOnBorder(dot, size)) {
+                model.moveDot(k, Cells.NONE);
+                return LOST;
+            }
+        }
+        if (multiDotSearch == null) {
+            multiDotSearch = new MultiDotSearch(new Random());
+        }
+        return (multiDotSearch.moveDots(model) == 0) ? WON : PLAYING;
+    }
+
+    /**
+     * Asks the dot strategy for the next location of the blue dot, within the time budget,
+     * unless the position is in the cache
+     *
+     * @param model the game
+     * @return the cell index of the next step for the blue dot toward the exit.
+     * If the blue dot is encircled and cannot exit, returns Cells.NONE
+     */
+    public int findDirection(GameModel model) {
+        long key = cacheKey(model);
+        int direction = cache.get(key, NOT_CACHED);
+        if (direction != NOT_CACHED) {
+            return direction;
+        }
+        long deadline = (timeBudget > 0) ? System.nanoTime() + timeBudget * 1000000L
+                : Long.MAX_VALUE;
+        direction = dotStrategy.nextMove(model, deadline);
+        cache.put(key, direction);
+        return direction;
+    }
+
+    /**
+     * Helper method: the key of a position in the cache. The hash ignores the size of the
+     * board, which the key must include
+     */
+    private static long cacheKey(GameModel model) {
+        return model.getHash() ^ (model.getSize() * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Getter for the time the strategy is given per move
+     *
+     * @return the time budget in milliseconds, 0 for no limit
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Getter for the cache of the answers of the dot strategy, and its hit and miss counters
+     *
+     * @return the decision cache
+     */
+    public DecisionCache getDecisionCache() {
+        return cache;
+    }
+
+    /**
+     * Getter for the strategy of the blue dot
+     *
+     * @return the dot strategy
+     */
+    public DotStrategy getDotStrategy() {
+        return dotStrategy;
+    }
+}
@@ -1,10 +1,12 @@
 import java.io.*;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
  * The class <b>GameModel</b> holds the model, the state of the systems. 
  * It stores the followiung information:
- * - the current location of the blue dot
+ * - the current location of the blue dot (and of the other blue dots, in the
+ *   variant with several of them)
  * - the state of all the dots on the board (available, selected or 
  *  occupied by the blue dot
  * - the size of the board
@@ -15,9 +17,19 @@ import java.util.Random;
  * The controller can also update the model through Setters.
  * Finally, the model is also in charge of initializing the game
  *
+ * A model is written by a single thread. Other threads read it through getSnapshot(),
+ * an immutable copy republished after each change.
+ *
  * @author Guy-Vincent Jourdan, University of Ottawa
  */
-public class GameModel implements Cloneable, Serializable {
+public class GameModel implements BoardState, Cloneable, Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Version of the layout written by writeExternal
+     */
+    private static final int EXTERNAL_VERSION = 1;
 
 
     /**
@@ -44,16 +56,45 @@ public class GameModel implements Cloneable, Serializable {
      */
     private int[][] model;
 
+    /**
+     * rowShared[i] is true if model[i] belongs to the published snapshot, and must be
+     * copied before being modified
+     */
+    private boolean[] rowShared;
+
+    /**
+     * blocked[cell] is true if the dot is not AVAILABLE, kept up to date on each change so
+     * that the dot strategies get it with a single array copy (see fillBlocked)
+     */
+    private boolean[] blocked;
+
+    /**
+     * Number of changes made to the model, and the latest snapshot published to readers
+     */
+    private long version;
+    private volatile BoardSnapshot snapshot;
+
 
    /**
-     * The current position of the blue dot
+     * The current position of the blue dot, as a cell index (see Cells)
      */
-    private Point currentDot;
+    private int currentDot;
+
+    /**
+     * The positions of the other blue dots, in the variant with several of them (see
+     * getDotCount), Cells.NONE for a dot that left the board. Empty in the original game
+     */
+    private int[] otherDots;
 
    /**
      * The number of steps played since the last reset
      */
     private int numberOfSteps;
+
+    /**
+     * Hash of the position (the state of every dot), kept up to date on each change
+     */
+    private long hash;
  
 
     private Random generator;
@@ -61,6 +102,12 @@ public class GameModel implements Cloneable, Serializable {
 
 
 
+    /**
+     * Constructor used by Externalizable only: the model is filled in by readExternal
+     */
+    public GameModel() {
+    }
+
     /**
      * Constructor to initialize the model to a given size of board.
      * 
@@ -68,13 +115,96 @@ public class GameModel implements Cloneable, Serializable {
      *            the size of the board
      */
     public GameModel(int size) {
+        this(size, new Random());
+    }
+
+    /**
+     * Constructor to initialize the model to a given size of board, drawing the
+     * initial position (and those of the following resets) from the given generator.
+     * Two models built with generators seeded alike start from the same position.
+     *
+     * @param size
+     *            the size of the board
+     * @param generator
+     *            the source of randomness of the model
+     */
+    public GameModel(int size, Random generator) {
+        this(size, 1, generator);
+    }
+
+    /**
+     * Constructor to initialize the model of a game with several blue dots. The first one
+     * starts in the centre as usual, the others on random available dots of the central
+     * half of the board.
+     *
+     * @param size
+     *            the size of the board
+     * @param dots
+     *            the number of blue dots, at most maxDots(size)
+     * @param generator
+     *            the source of randomness of the model
+     */
+    public GameModel(int size, int dots, Random generator) {
+        if (dots < 1 || dots > maxDots(size)) {
+            throw new IllegalArgumentException("A board of size " + size + " holds 1 to "
+                    + maxDots(size) + " blue dots");
+        }
         numberOfSteps = 0;
-        generator = new Random();
+        this.generator = generator;
         sizeOfGame = size;
+        otherDots = new int[dots - 1];
 
         reset();
     }
 
+    /**
+     * Constructor used to rebuild a model from a previously recorded state
+     *
+     * @param size the size of the board
+     * @param model the state of each dot, indexed [x][y]
+     * @param dotX the x coordinate of the blue dot
+     * @param dotY the y coordinate of the blue dot
+     * @param numberOfSteps the number of steps played
+     */
+    GameModel(int size, int[][] model, int dotX, int dotY, int numberOfSteps) {
+        this(size, model, dotX, dotY, numberOfSteps, new int[0]);
+    }
+
+    /**
+     * Constructor used to rebuild a model with several blue dots from a previously
+     * recorded state
+     *
+     * @param size the size of the board
+     * @param model the state of each dot, indexed [x][y]
+     * @param dotX the x coordinate of the first blue dot
+     * @param dotY the y coordinate of the first blue dot
+     * @param numberOfSteps the number of steps played
+     * @param otherDots the cells of the other blue dots (Cells.NONE if they left the board)
+     */
+    GameModel(int size, int[][] model, int dotX, int dotY, int numberOfSteps,
+            int[] otherDots) {
+        this.sizeOfGame = size;
+        this.model = model;
+        this.currentDot = Cells.index(dotX, dotY, size);
+        this.otherDots = otherDots;
+        this.numberOfSteps = numberOfSteps;
+        this.generator = new Random();
+        this.rowShared = new boolean[size];
+        this.blocked = new boolean[size * size];
+        for (int i = 0; i < size; i++) {
+            int[] column = model[i];
+            for (int j = 0; j < size; j++) {
+                // AVAILABLE dots add nothing to the hash and are not blocked
+                if (column[j] != AVAILABLE) {
+                    int cell = Cells.index(i, j, size);
+                    hash ^= cellKey(cell, column[j]);
+                    blocked[cell] = true;
+                }
+            }
+        }
+        publish();
+    }
+
 
     /**
      * Resets the model to (re)start a game. The previous game (if there is one)
@@ -84,39 +214,52 @@ public class GameModel implements Cloneable, Serializable {
      */
     public void reset(){
 
+        // a new array is all AVAILABLE (0) already
         model = new int[sizeOfGame][sizeOfGame];
-
-        for(int i = 0; i < sizeOfGame; i++){
-            for(int j = 0; j < sizeOfGame; j++){
-                model[i][j] = AVAILABLE;
-            }
-        }
+        rowShared = new boolean[sizeOfGame];
+        blocked = new boolean[sizeOfGame * sizeOfGame];
+        hash = 0;
 
         // on a odd board, put the current dot randomly on a centered square of
         // 2 by 2, on an even board, put the current dot randomly on a centered 
         // square of 3 by 3
 
+        int dotX, dotY;
         if(sizeOfGame%2 == 0){
-            currentDot = new Point(sizeOfGame/2 - generator.nextInt(2),
-                sizeOfGame/2 - generator.nextInt(2));
+            dotX = sizeOfGame/2 - generator.nextInt(2);
+            dotY = sizeOfGame/2 - generator.nextInt(2);
         } else{
-            currentDot = new Point(sizeOfGame/2 + 1 - generator.nextInt(3),
-                sizeOfGame/2 + 1 - generator.nextInt(3));
+            dotX = sizeOfGame/2 + 1 - generator.nextInt(3);
+            dotY = sizeOfGame/2 + 1 - generator.nextInt(3);
         }
+        currentDot = Cells.index(dotX, dotY, sizeOfGame);
 
-        model[currentDot.getX()][currentDot.getY()] = DOT;
+        setStatus(dotX, dotY, DOT);
 
         for(int i = 0; i < sizeOfGame; i++){
             for(int j = 0; j < sizeOfGame; j++){
-                if(!( i == currentDot.getX() && j == currentDot.getY())){
+                if(!( i == dotX && j == dotY)){
                     if(generator.nextInt(INITIAL_PROBA) == 0){
-                        model[i][j] = SELECTED;
+                        setStatus(i, j, SELECTED);
                     }
                 }
             }
         }
 
+        // the other blue dots, if any, on the central half of the board
+        int quarter = sizeOfGame / 4;
+        for (int k = 0; k < otherDots.length; k++) {
+            int x, y;
+            do {
+                x = quarter + generator.nextInt(sizeOfGame / 2);
+                y = quarter + generator.nextInt(sizeOfGame / 2);
+            } while (model[x][y] == DOT);
+            setStatus(x, y, DOT);
+            otherDots[k] = Cells.index(x, y, sizeOfGame);
+        }
+
         numberOfSteps = 0;
+        publish();
     }
 
 
@@ -132,10 +275,34 @@ public class GameModel implements Cloneable, Serializable {
    /**
      * Getter method for the ``model'' array
      * 
-     * @return the model array
+     * @return a copy of the model array
      */   
     public int[][] getModel(){
-        return model;
+        int[][] copy = new int[sizeOfGame][];
+        for (int i = 0; i < sizeOfGame; i++) {
+            copy[i] = model[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Marks the dots the blue dot cannot step on (see DotStrategies.fillBlocked). The
+     * model keeps them up to date, so this is one bulk copy rather than a scan of the board
+     *
+     * @param out an array of size*size booleans, indexed by cell (see Cells)
+     */
+    void fillBlocked(boolean[] out){
+        System.arraycopy(blocked, 0, out, 0, blocked.length);
+    }
+
+    /**
+     * Getter method for the latest immutable snapshot of the model. Unlike the other
+     * methods, it can be called from any thread and never blocks the writer
+     *
+     * @return the snapshot of the model as of its last change
+     */
+    public BoardSnapshot getSnapshot(){
+        return snapshot;
     }
 
 
@@ -164,8 +331,9 @@ public class GameModel implements Cloneable, Serializable {
      *            the y coordinate of the dot
      */   
     public void select(int i, int j){
-        model[i][j] = SELECTED;
+        setStatus(i, j, SELECTED);
         numberOfSteps++;
+        publish();
     }
 
     /**
@@ -179,23 +347,147 @@ public class GameModel implements Cloneable, Serializable {
      *            the new y coordinate of the blue dot
      */   
     public void setCurrentDot(int i, int j){
-        model[currentDot.getX()][currentDot.getY()] = AVAILABLE;
+        setStatus(Cells.x(currentDot, sizeOfGame), Cells.y(currentDot, sizeOfGame), AVAILABLE);
         // pass on "-1" to remove the current dot at the end of the game
         if(i != -1) {
-            model[i][j] = DOT;
-            currentDot.reset(i,j);
+            setStatus(i, j, DOT);
+            currentDot = Cells.index(i, j, sizeOfGame);
+        }
+        publish();
+    }
+
+    /**
+     * Getter method for the number of blue dots: 1 in the original game
+     *
+     * @return the number of blue dots
+     */
+    public int getDotCount(){
+        return otherDots.length + 1;
+    }
+
+    /**
+     * Getter method for the location of one of the blue dots
+     *
+     * @param k the index of the dot, 0 being the current blue dot
+     * @return the cell index (see Cells) of the dot, Cells.NONE if it left the board
+     */
+    public int getDotCell(int k){
+        return (k == 0) ? currentDot : otherDots[k - 1];
+    }
+
+    /**
+     * Moves one of the blue dots, clearing its previous location
+     *
+     * @param k the index of the dot, 0 being the current blue dot (see setCurrentDot)
+     * @param cell the new cell (see Cells) of the dot, Cells.NONE if it exits the board
+     */
+    public void moveDot(int k, int cell){
+        if (k == 0) {
+            if (cell == Cells.NONE) {
+                setCurrentDot(-1, -1);
+            }
+            else {
+                setCurrentDot(Cells.x(cell, sizeOfGame), Cells.y(cell, sizeOfGame));
+            }
+            return;
+        }
+        int from = otherDots[k - 1];
+        if (from != Cells.NONE) {
+            setStatus(Cells.x(from, sizeOfGame), Cells.y(from, sizeOfGame), AVAILABLE);
         }
+        otherDots[k - 1] = cell;
+        if (cell != Cells.NONE) {
+            setStatus(Cells.x(cell, sizeOfGame), Cells.y(cell, sizeOfGame), DOT);
+        }
+        publish();
+    }
+
+    /**
+     * The largest number of blue dots a board can hold: half of the dots of its central
+     * half, which leaves room for the selected ones
+     *
+     * @param size the size of the board
+     * @return the largest number of blue dots
+     */
+    public static int maxDots(int size){
+        return Math.max(1, (size / 2) * (size / 2) / 2);
     }
 
     /**
      * Getter method for the current blue dot
      * 
-     * @return the location of the curent blue dot
+     * @return a new Point holding the location of the curent blue dot
      */   
     public Point getCurrentDot(){
+        return new Point(Cells.x(currentDot, sizeOfGame), Cells.y(currentDot, sizeOfGame));
+    }
+
+    /**
+     * Getter method for the current blue dot, without allocation
+     *
+     * @return the cell index (see Cells) of the current blue dot
+     */
+    public int getCurrentDotCell(){
         return currentDot;
     }
 
+    /**
+     * Getter method for the hash of the position. Two models with the same dots in the
+     * same states have the same hash, whatever the number of steps
+     *
+     * @return a 64 bits hash of the position
+     */
+    public long getHash(){
+        return hash;
+    }
+
+    /**
+     * Helper method: changes the state of a dot and updates the hash accordingly
+     *
+     * @param i the x coordinate of the dot
+     * @param j the y coordinate of the dot
+     * @param state the new state of the dot
+     */
+    private void setStatus(int i, int j, int state){
+        int cell = Cells.index(i, j, sizeOfGame);
+        hash ^= cellKey(cell, model[i][j]) ^ cellKey(cell, state);
+        if (rowShared[i]) {
+            model[i] = model[i].clone();
+            rowShared[i] = false;
+        }
+        model[i][j] = state;
+        blocked[cell] = state != AVAILABLE;
+    }
+
+    /**
+     * Helper method: publishes a snapshot of the current state to the readers. The
+     * rows are shared with the snapshot, so this is O(size)
+     */
+    private void publish(){
+        version++;
+        snapshot = new BoardSnapshot(version, sizeOfGame, model.clone(), currentDot,
+                (otherDots.length == 0) ? otherDots : otherDots.clone(), numberOfSteps, hash);
+        Arrays.fill(rowShared, true);
+    }
+
+    /**
+     * Helper method: the contribution of a dot to the hash of the position (Zobrist
+     * hashing, the random keys being derived from the cell and state with a mixing function)
+     *
+     * @param cell the cell of the dot
+     * @param state the state of the dot
+     * @return the key of that dot in that state, 0 for AVAILABLE
+     */
+    private static long cellKey(int cell, int state){
+        if(state == AVAILABLE){
+            return 0;
+        }
+        long z = (((long) cell << 2) | state) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Getter method for the current number of steps
      * 
@@ -215,7 +507,9 @@ public class GameModel implements Cloneable, Serializable {
 
         GameModel cloneModel = (GameModel) super.clone();
         cloneModel.model = model.clone();
-        cloneModel.currentDot = (Point) currentDot.clone();
+        cloneModel.rowShared = new boolean[sizeOfGame];
+        cloneModel.blocked = blocked.clone();
+        cloneModel.otherDots = otherDots.clone();
 
         // Each entry of the array is in itself an object.
         // Therefore we must clone each "row" as well.
@@ -227,4 +521,81 @@ public class GameModel implements Cloneable, Serializable {
 
     }
 
+    /**
+     * Writes the model: a version byte, then its BoardCodec encoding (one bit per cell,
+     * or run-length encoded bits) preceded by its length. The random generator is not
+     * saved, a restored model gets a new one
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        byte[] data = BoardCodec.encode(this);
+        out.writeByte(EXTERNAL_VERSION);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /**
+     * Reads a model written by writeExternal. Games saved before GameModel was
+     * Externalizable are read with a SaveInputStream
+     * @param in the stream to read from
+     * @throws IOException if the stream cannot be read, is corrupted, or comes from a
+     *             newer version of the game
+     */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != EXTERNAL_VERSION) {
+            throw new InvalidObjectException("Unknown game model version " + version);
+        }
+        try {
+            copyFrom(BoardCodec.decode(readEncoding(in)));
+        }
+        catch (IllegalArgumentException e) {
+            throw new InvalidObjectException("Corrupted game model");
+        }
+    }
+
+    /**
+     * Reads a BoardCodec encoding preceded by its length. The bytes are read in chunks of
+     * growing size, so that a corrupted length runs into the end of the stream rather
+     * than out of memory
+     * @param in the stream to read from
+     * @return the encoding
+     * @throws IOException if the stream cannot be read or the length is invalid
+     */
+    static byte[] readEncoding(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new InvalidObjectException("Corrupted game model");
+        }
+        byte[] data = new byte[Math.min(length, 1 << 16)];
+        in.readFully(data);
+        while (data.length < length) {
+            int read = data.length;
+            data = Arrays.copyOf(data, (int) Math.min(length, 2L * read));
+            in.readFully(data, read, data.length - read);
+        }
+        return data;
+    }
+
+    /**
+     * Helper method: takes over the state of a freshly decoded model
+     * @param decoded the model to take the state of, not used afterwards
+     */
+    private void copyFrom(GameModel decoded) {
+        sizeOfGame = decoded.sizeOfGame;
+        model = decoded.model;
+        rowShared = decoded.rowShared;
+        blocked = decoded.blocked;
+        version = decoded.version;
+        snapshot = decoded.snapshot;
+        currentDot = decoded.currentDot;
+        otherDots = decoded.otherDots;
+        numberOfSteps = decoded.numberOfSteps;
+        hash = decoded.hash;
+        generator = new Random();
+    }
+
 }
@@ -0,0 +1,264 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The class <b>GameRecordReader</b> scans a file written by <b>GameRecordWriter</b>, one
+ * chunk at a time. The file is mapped in memory by windows of MAP_WINDOW bytes, and the
+ * columns of a chunk are read-only views of the mapping: nothing is copied to the heap,
+ * so files much larger than the heap can be scanned. Deflated chunks are inflated into
+ * one reusable buffer instead.
+ *
+ * Typical use:
+ * <pre>
+ * GameRecordReader reader = new GameRecordReader(file);
+ * while (reader.nextChunk()) {
+ *     IntBuffer distances = reader.getDistances();
+ *     for (int i = 0; i &lt; reader.getChunkSize(); i++) {
+ *         ... distances.get(i) ...
+ *     }
+ * }
+ * reader.close();
+ * </pre>
+ */
+public class GameRecordReader implements Closeable {
+
+    /**
+     * Size of the part of the file mapped at a time (more for a larger chunk)
+     */
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+
+    /**
+     * The mapped window of the file, and its offset in the file
+     */
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * Offset of the next chunk in the file
+     */
+    private long position = GameRecordWriter.FILE_HEADER_BYTES;
+
+    /**
+     * The current chunk
+     */
+    private int chunkSize;
+    private LongBuffer seeds;
+    private IntBuffer moves;
+    private IntBuffer selected;
+    private IntBuffer dots;
+    private IntBuffer distances;
+
+    private final Inflater inflater = new Inflater();
+    private ByteBuffer inflated;
+    private byte[] input;
+
+    /**
+     * Constructor
+     *
+     * @param file the file to read
+     * @throws IOException if the file cannot be opened, or is not a record file
+     */
+    public GameRecordReader(File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(GameRecordWriter.FILE_HEADER_BYTES);
+        channel.read(header, 0);
+        if (fileSize < GameRecordWriter.FILE_HEADER_BYTES
+                || header.getInt(0) != GameRecordWriter.MAGIC
+                || header.getInt(4) != GameRecordWriter.VERSION) {
+            channel.close();
+            throw new IOException(file + " is not a game record file");
+        }
+    }
+
+    /**
+     * Moves to the next chunk of records
+     *
+     * @return false if there are no more chunks
+     * @throws IOException if the file cannot be read or is truncated
+     */
+    public boolean nextChunk() throws IOException {
+        if (position + GameRecordWriter.CHUNK_HEADER_BYTES > fileSize) {
+            return false;
+        }
+        ByteBuffer header = map(position, GameRecordWriter.CHUNK_HEADER_BYTES);
+        int records = header.getInt();
+        int flags = header.getInt();
+        int stored = header.getInt();
+        int rawLength = header.getInt();
+        if (records < 0 || stored < 0 || rawLength != records * GameRecordWriter.RECORD_BYTES
+                || position + GameRecordWriter.CHUNK_HEADER_BYTES + stored > fileSize) {
+            throw new IOException("Truncated or corrupted chunk at offset " + position);
+        }
+        ByteBuffer data = map(position + GameRecordWriter.CHUNK_HEADER_BYTES, stored);
+        position += GameRecordWriter.CHUNK_HEADER_BYTES + stored;
+
+        if ((flags & GameRecordWriter.FLAG_DEFLATED) != 0) {
+            data = inflate(data, rawLength);
+        }
+        else if (stored != rawLength) {
+            throw new IOException("Corrupted chunk before offset " + position);
+        }
+
+        chunkSize = records;
+        int ints = records * 4;
+        seeds = column(data, 0, records * 8).asLongBuffer();
+        moves = column(data, records * 8, ints).asIntBuffer();
+        selected = column(data, records * 8 + ints, ints).asIntBuffer();
+        dots = column(data, records * 8 + 2 * ints, ints).asIntBuffer();
+        distances = column(data, records * 8 + 3 * ints, ints).asIntBuffer();
+        return true;
+    }
+
+    /**
+     * Getter for the number of records of the current chunk
+     *
+     * @return the number of records
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * The columns of the current chunk, valid until the next call to nextChunk. Index i of
+     * each column is record i of the chunk.
+     *
+     * @return a read-only view of the column
+     */
+    public LongBuffer getSeeds() {
+        return seeds;
+    }
+
+    public IntBuffer getMoves() {
+        return moves;
+    }
+
+    public IntBuffer getSelected() {
+        return selected;
+    }
+
+    public IntBuffer getDots() {
+        return dots;
+    }
+
+    public IntBuffer getDistances() {
+        return distances;
+    }
+
+    public void close() throws IOException {
+        window = null;
+        inflater.end();
+        channel.close();
+    }
+
+    /**
+     * Helper method: a view of a part of the file, mapping a new window if needed
+     */
+    private ByteBuffer map(long offset, int length) throws IOException {
+        if (window == null || offset < windowStart
+                || offset + length > windowStart + window.capacity()) {
+            windowStart = offset;
+            long windowSize = Math.min(Math.max(MAP_WINDOW, length), fileSize - offset);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+        }
+        ByteBuffer view = window.duplicate();
+        view.position((int) (offset - windowStart));
+        view.limit(view.position() + length);
+        return view.slice();
+    }
+
+    /**
+     * Helper method: a column of the raw bytes of a chunk
+     */
+    private static ByteBuffer column(ByteBuffer data, int offset, int length) {
+        ByteBuffer view = data.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Helper method: inflates a deflated chunk into the reusable buffer
+     */
+    private ByteBuffer inflate(ByteBuffer data, int rawLength) throws IOException {
+        if (input == null || input.length < data.remaining()) {
+            input = new byte[Math.max(data.remaining(), GameRecordWriter.CHUNK_RECORDS
+                    * GameRecordWriter.RECORD_BYTES)];
+        }
+        if (inflated == null || inflated.capacity() < rawLength) {
+            inflated = ByteBuffer.allocate(Math.max(rawLength, GameRecordWriter.CHUNK_RECORDS
+                    * GameRecordWriter.RECORD_BYTES));
+        }
+        int length = data.remaining();
+        data.get(input, 0, length);
+        inflater.reset();
+        inflater.setInput(input, 0, length);
+        try {
+            if (inflater.inflate(inflated.array(), 0, rawLength) != rawLength) {
+                throw new IOException("Corrupted deflated chunk");
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Corrupted deflated chunk", e);
+        }
+        ByteBuffer raw = inflated.duplicate();
+        raw.position(0);
+        raw.limit(rawLength);
+        return raw.slice();
+    }
+
+    /**
+     * Prints a summary of a record file
+     *
+     * @param args the file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java GameRecordReader file");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long records = 0;
+        long chunks = 0;
+        long firstMoves = 0;
+        long lost = 0;
+        long circled = 0;
+        GameRecordReader reader = new GameRecordReader(new File(args[0]));
+        try {
+            while (reader.nextChunk()) {
+                chunks++;
+                int n = reader.getChunkSize();
+                IntBuffer moves = reader.getMoves();
+                IntBuffer dots = reader.getDots();
+                IntBuffer distances = reader.getDistances();
+                for (int i = 0; i < n; i++) {
+                    if (moves.get(i) == 0) {
+                        firstMoves++;
+                    }
+                    if (dots.get(i) == Cells.NONE) {
+                        lost++;
+                    }
+                    else if (distances.get(i) == GameRecordWriter.CIRCLED) {
+                        circled++;
+                    }
+                }
+                records += n;
+            }
+        }
+        finally {
+            reader.close();
+        }
+        System.out.println(records + " moves in " + chunks + " chunks, " + firstMoves
+                + " games started, " + lost + " escapes, " + circled + " moves with the dot"
+                + " circled (" + (System.currentTimeMillis() - start) + " ms)");
+    }
+}
@@ -0,0 +1,252 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.Deflater;
+
+/**
+ * The class <b>GameRecordWriter</b> streams every move of every game to a file, for
+ * offline analysis. A record holds the seed (or identifier) of the game, the index of the
+ * move, the cell selected by the player, the cell the blue dot moved to, and the distance
+ * of the blue dot to the exit after the move.
+ *
+ * The file is a sequence of chunks of at most CHUNK_RECORDS records, stored column by
+ * column so that a scan only touches the columns it needs (see GameRecordReader):
+ *
+ * <pre>
+ * file:  int MAGIC, int VERSION, then chunks until the end of the file
+ * chunk: int records, int flags (FLAG_DEFLATED), int stored length, int raw length,
+ *        then the stored bytes: the raw bytes, or the raw bytes deflated
+ * raw:   long seed[records], int move[records], int selected[records],
+ *        int dot[records], int distance[records]
+ * </pre>
+ *
+ * All values are big-endian. dot is Cells.NONE once the blue dot has left the board, and
+ * distance is the number of moves the blue dot needs to reach the border, 0 once it has
+ * left the board and -1 if it is circled. Records are buffered in memory and written a
+ * chunk at a time through a FileChannel; an existing file is appended to.
+ *
+ * The writer is thread-safe, so games played in parallel can share it.
+ */
+public class GameRecordWriter implements Closeable {
+
+    public static final int MAGIC = 0x43544752; // "CTGR"
+    public static final int VERSION = 1;
+
+    /**
+     * Number of records per chunk
+     */
+    public static final int CHUNK_RECORDS = 65536;
+
+    /**
+     * Size of a record, in bytes, in the raw columns
+     */
+    public static final int RECORD_BYTES = 8 + 4 * 4;
+
+    public static final int FILE_HEADER_BYTES = 8;
+    public static final int CHUNK_HEADER_BYTES = 16;
+
+    public static final int FLAG_DEFLATED = 1;
+
+    /**
+     * Distance recorded when the blue dot is circled
+     */
+    public static final int CIRCLED = -1;
+
+    private final FileChannel channel;
+    private final Deflater deflater;
+
+    /**
+     * The records of the current chunk
+     */
+    private final long[] seeds = new long[CHUNK_RECORDS];
+    private final int[] moves = new int[CHUNK_RECORDS];
+    private final int[] selected = new int[CHUNK_RECORDS];
+    private final int[] dots = new int[CHUNK_RECORDS];
+    private final int[] distances = new int[CHUNK_RECORDS];
+    private int count;
+
+    /**
+     * Buffers of the chunk being written: its header, its raw columns, and their
+     * deflated version
+     */
+    private final ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES);
+    private final ByteBuffer raw = ByteBuffer.allocate(CHUNK_RECORDS * RECORD_BYTES);
+    private byte[] deflated;
+
+    /**
+     * Buffers used to compute the distance of the blue dot, one set per thread so that
+     * games played in parallel compute their distances at the same time
+     */
+    private static final class Scratch {
+        private final EscapeMap map = new EscapeMap();
+        private boolean[] blocked;
+    }
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    /**
+     * Constructor
+     *
+     * @param file the file to write to, appended to if it already holds records
+     * @param deflate true to compress each chunk (the reader then has to inflate it)
+     * @throws IOException if the file cannot be opened, or is not a record file
+     */
+    public GameRecordWriter(File file, boolean deflate) throws IOException {
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        if (channel.size() == 0) {
+            fileHeader.putInt(MAGIC).putInt(VERSION).flip();
+            while (fileHeader.hasRemaining()) {
+                channel.write(fileHeader);
+            }
+        }
+        else {
+            channel.read(fileHeader, 0);
+            if (fileHeader.getInt(0) != MAGIC || fileHeader.getInt(4) != VERSION) {
+                channel.close();
+                throw new IOException(file + " is not a game record file");
+            }
+            channel.position(channel.size());
+        }
+        deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+    }
+
+    /**
+     * Records a move
+     *
+     * @param seed the seed or identifier of the game
+     * @param move the index of the move in the game, from 0
+     * @param selectedCell the cell selected by the player
+     * @param dot the cell of the blue dot after the move, Cells.NONE if it left the board
+     * @param distance the distance of the blue dot to the exit after the move, or CIRCLED
+     * @throws IOException if a full chunk cannot be written
+     */
+    public synchronized void record(long seed, int move, int selectedCell, int dot, int distance)
+            throws IOException {
+        seeds[count] = seed;
+        moves[count] = move;
+        selected[count] = selectedCell;
+        dots[count] = dot;
+        distances[count] = distance;
+        if (++count == CHUNK_RECORDS) {
+            flush();
+        }
+    }
+
+    /**
+     * Records a move played by GameEngine.play, computing the distance of the blue dot
+     * (one breadth-first search, O(N^2)). The search runs outside the lock of the writer,
+     * only the record itself is written under it
+     *
+     * @param seed the seed or identifier of the game
+     * @param after the game once the move has been played
+     * @param selectedCell the cell selected by the player
+     * @param status the result of GameEngine.play: PLAYING, WON or LOST
+     * @throws IOException if a full chunk cannot be written
+     */
+    public void record(long seed, GameModel after, int selectedCell, int status)
+            throws IOException {
+        int move = after.getNumberOfSteps() - 1;
+        if (status == GameEngine.LOST) {
+            record(seed, move, selectedCell, Cells.NONE, 0);
+            return;
+        }
+        int dot = after.getCurrentDotCell();
+        int size = after.getSize();
+        int distance;
+        if (status == GameEngine.WON) {
+            distance = CIRCLED;
+        }
+        else if (Cells.isOnBorder(dot, size)) {
+            distance = 0;
+        }
+        else {
+            Scratch buffers = scratch.get();
+            if (buffers.blocked == null || buffers.blocked.length != size * size) {
+                buffers.blocked = new boolean[size * size];
+            }
+            DotStrategies.fillBlocked(after, buffers.blocked);
+            buffers.blocked[dot] = false;
+            buffers.map.compute(buffers.blocked, size);
+            distance = buffers.map.getDistance(dot);
+            if (distance == EscapeMap.UNREACHABLE) {
+                distance = CIRCLED;
+            }
+        }
+        record(seed, move, selectedCell, dot, distance);
+    }
+
+    /**
+     * Writes the records buffered so far as a chunk
+     *
+     * @throws IOException if the chunk cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        raw.clear();
+        raw.asLongBuffer().put(seeds, 0, count);
+        raw.position(count * 8);
+        putColumn(moves);
+        putColumn(selected);
+        putColumn(dots);
+        putColumn(distances);
+        raw.flip();
+        int rawLength = raw.limit();
+
+        ByteBuffer payload = raw;
+        int flags = 0;
+        if (deflater != null) {
+            if (deflated == null) {
+                deflated = new byte[raw.capacity()];
+            }
+            deflater.reset();
+            deflater.setInput(raw.array(), 0, rawLength);
+            deflater.finish();
+            int length = deflater.deflate(deflated);
+            if (deflater.finished() && length < rawLength) {
+                payload = ByteBuffer.wrap(deflated, 0, length);
+                flags = FLAG_DEFLATED;
+            }
+        }
+
+        header.clear();
+        header.putInt(count).putInt(flags).putInt(payload.remaining()).putInt(rawLength).flip();
+        ByteBuffer[] chunk = {header, payload};
+        while (payload.hasRemaining()) {
+            channel.write(chunk);
+        }
+        count = 0;
+    }
+
+    /**
+     * Writes the last chunk and closes the file
+     *
+     * @throws IOException if the chunk cannot be written
+     */
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+        }
+        finally {
+            channel.close();
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    private void putColumn(int[] column) {
+        raw.asIntBuffer().put(column, 0, count);
+        raw.position(raw.position() + count * 4);
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The class <b>GameSaver</b> saves the game on a background thread, so that saving never
+ * blocks the user interface. It is given immutable snapshots of the model (see
+ * GameModel.getSnapshot), which stay valid while the game goes on. A save is written to a
+ * temporary file next to the save file, synced, then renamed over the save file, so the
+ * save file is always either the previous save or the new one, never a partial write.
+ *
+ * Saves are coalesced: if several snapshots are given while a save is being written, only
+ * the latest is written next. Pending saves are written when the JVM exits (shutdown hook)
+ * for up to FLUSH_SECONDS.
+ */
+public class GameSaver {
+
+    /**
+     * Time given to the pending saves when the JVM exits, in seconds
+     */
+    public static final int FLUSH_SECONDS = 10;
+
+    /**
+     * Receives the errors of the background writes
+     */
+    public interface Listener {
+
+        /**
+         * Called on the saver thread when a save could not be written
+         *
+         * @param e the cause
+         */
+        void saveFailed(IOException e);
+    }
+
+    private final File file;
+    private final File temporary;
+    private final Listener listener;
+    private final ExecutorService writer;
+
+    /**
+     * The latest snapshot not written yet, null if there is none. A write task is queued
+     * whenever it goes from null to a snapshot
+     */
+    private final AtomicReference<BoardSnapshot> pending = new AtomicReference<BoardSnapshot>();
+
+    /**
+     * The last snapshot written (saver thread only)
+     */
+    private BoardSnapshot written;
+
+    /**
+     * Constructor
+     *
+     * @param file the save file
+     * @param listener told about the saves that fail
+     */
+    public GameSaver(File file, Listener listener) {
+        this.file = file.getAbsoluteFile();
+        this.temporary = new File(this.file.getPath() + ".tmp");
+        this.listener = listener;
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "game-saver");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread("game-saver-flush") {
+            public void run() {
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Asks for a snapshot to be saved, and returns right away
+     *
+     * @param snapshot the position to save
+     */
+    public void save(BoardSnapshot snapshot) {
+        if (pending.getAndSet(snapshot) == null) {
+            submit(new Runnable() {
+                public void run() {
+                    write(pending.getAndSet(null));
+                }
+            });
+        }
+    }
+
+    /**
+     * Deletes the save file, once the saves asked for so far are written. Used when the
+     * game is over and there is nothing to resume
+     */
+    public void discard() {
+        pending.set(null);
+        submit(new Runnable() {
+            public void run() {
+                written = null;
+                if (file.exists() && !file.delete()) {
+                    listener.saveFailed(new IOException("Cannot delete " + file));
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the pending saves and stops the saver. Waits at most FLUSH_SECONDS
+     */
+    public void flush() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(FLUSH_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Helper method: queues a task, unless the saver is stopped
+     */
+    private void submit(Runnable task) {
+        if (!writer.isShutdown()) {
+            try {
+                writer.execute(task);
+            }
+            catch (RejectedExecutionException e) {
+                // stopped in between: the JVM is exiting
+            }
+        }
+    }
+
+    /**
+     * Helper method: writes a snapshot to the temporary file, then renames it over the
+     * save file (saver thread only)
+     *
+     * @param snapshot the position to save, null if it was discarded in the meantime
+     */
+    private void write(BoardSnapshot snapshot) {
+        if (snapshot == null || snapshot == written) {
+            return;
+        }
+        try {
+            GameModel model = BoardCodec.decode(BoardCodec.encode(snapshot));
+            FileOutputStream fileOut = new FileOutputStream(temporary);
+            try {
+                ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fileOut));
+                out.writeObject(model);
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            finally {
+                fileOut.close();
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            written = snapshot;
+        }
+        catch (IOException e) {
+            temporary.delete();
+            listener.saveFailed(e);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <b>GameServer</b> hosts many concurrent games in one JVM, without any user
+ * interface, for bots to play against. Clients connect on a localhost TCP port and send
+ * one command per line; each command gets exactly one line in reply:
+ *
+ * <pre>
+ * new SIZE [STRATEGY [BUDGET]]   ok ID SIZE DOTX DOTY
+ * select ID X Y                  ok ID playing|won|lost DOTX DOTY STEPS
+ * board ID                       ok ID SIZE DOTX DOTY STEPS CELLS
+ * close ID                       ok ID
+ * quit                           (closes the connection)
+ * </pre>
+ *
+ * CELLS is one digit (GameModel.AVAILABLE, SELECTED or DOT) per cell, in Cells order.
+ * Errors are reported as "error MESSAGE".
+ *
+ * Sessions are spread over shards, one per core. Each shard owns its sessions and runs
+ * all of their commands on its own thread, so a session needs no locking and the load
+ * scales across cores. Sessions that have not been used for a while are evicted to a
+ * compact <b>BoardCodec</b> snapshot and restored on their next command.
+ */
+public class GameServer {
+
+    public static final int DEFAULT_PORT = 4321;
+
+    /**
+     * Sessions idle for longer than this many milliseconds are evicted to snapshots
+     */
+    private static final long IDLE_MILLIS = Long.getLong("server.idle", 60000L);
+
+    /**
+     * A game hosted by the server. Only accessed from the thread of its shard.
+     */
+    private static class Session {
+        private final long id;
+        private final String strategyName;
+        private final long timeBudget;
+        private GameModel model;
+        private GameEngine engine;
+        private byte[] snapshot;
+        private int status = GameEngine.PLAYING;
+        private long lastUsed;
+
+        private Session(long id, GameModel model, String strategyName, long timeBudget) {
+            this.id = id;
+            this.model = model;
+            this.strategyName = strategyName;
+            this.timeBudget = timeBudget;
+            this.engine = new GameEngine(DotStrategies.create(strategyName, new Random()),
+                    timeBudget);
+        }
+
+        /**
+         * Restores an evicted session
+         */
+        private void wake() {
+            if (model == null) {
+                model = BoardCodec.decode(snapshot);
+                snapshot = null;
+                engine = new GameEngine(DotStrategies.create(strategyName, new Random()),
+                        timeBudget);
+            }
+            lastUsed = System.currentTimeMillis();
+        }
+
+        /**
+         * Replaces the model and the engine (and the caches of its strategy) by a snapshot
+         */
+        private void evict() {
+            snapshot = BoardCodec.encode(model);
+            model = null;
+            engine = null;
+        }
+    }
+
+    /**
+     * A set of sessions and the thread running their commands
+     */
+    private static class Shard {
+        private final Map<Long, Session> sessions = new HashMap<Long, Session>();
+        private final ExecutorService thread;
+
+        private Shard(final int index) {
+            thread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "game-shard-" + index);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        private void evictIdle(long now) {
+            for (Session session : sessions.values()) {
+                if (session.model != null && now - session.lastUsed > IDLE_MILLIS) {
+                    session.evict();
+                }
+            }
+        }
+    }
+
+    private final Shard[] shards;
+    private final AtomicLong nextId = new AtomicLong();
+    private final ExecutorService connections;
+    private final ScheduledExecutorService evictor;
+    private ServerSocket serverSocket;
+
+    /**
+     * Constructor
+     *
+     * @param numberOfShards the number of shards (threads running games)
+     */
+    public GameServer(int numberOfShards) {
+        shards = new Shard[numberOfShards];
+        for (int i = 0; i < numberOfShards; i++) {
+            shards[i] = new Shard(i);
+        }
+        connections = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "game-connection");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        evictor = Executors.newSingleThreadScheduledExecutor();
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                final long now = System.currentTimeMillis();
+                for (final Shard shard : shards) {
+                    shard.thread.execute(new Runnable() {
+                        public void run() {
+                            shard.evictIdle(now);
+                        }
+                    });
+                }
+            }
+        }, IDLE_MILLIS, Math.max(1, IDLE_MILLIS / 2), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Accepts connections on a localhost port until stop is called
+     *
+     * @param port the port to listen to
+     * @throws IOException if the port cannot be opened
+     */
+    public void serve(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        while (!serverSocket.isClosed()) {
+            final Socket client;
+            try {
+                client = serverSocket.accept();
+            }
+            catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    break;
+                }
+                throw e;
+            }
+            connections.execute(new Runnable() {
+                public void run() {
+                    converse(client);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops accepting connections and releases the threads
+     */
+    public void stop() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        }
+        catch (IOException e) {
+            // closing anyway
+        }
+        evictor.shutdown();
+        connections.shutdownNow();
+        for (Shard shard : shards) {
+            shard.thread.shutdown();
+        }
+    }
+
+    /**
+     * Reads the commands of a client until it quits or disconnects
+     *
+     * @param client the connection
+     */
+    private void converse(Socket client) {
+        try {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), "US-ASCII"));
+            Writer out = new BufferedWriter(
+                    new OutputStreamWriter(client.getOutputStream(), "US-ASCII"));
+            String line;
+            while ((line = in.readLine()) != null && !line.trim().equals("quit")) {
+                out.write(handle(line));
+                out.write('\n');
+                // only flush once the client has no more pipelined commands
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        }
+        catch (IOException e) {
+            // the client went away
+        }
+        finally {
+            try {
+                client.close();
+            }
+            catch (IOException e) {
+                // nothing more to do
+            }
+        }
+    }
+
+    /**
+     * Runs one command and returns its reply. Can be called from any thread.
+     *
+     * @param line the command
+     * @return the reply, without the end of line
+     */
+    public String handle(String line) {
+        final String[] words = line.trim().split("\\s+");
+        try {
+            if (words[0].equals("new")) {
+                final int size = Integer.parseInt(words[1]);
+                if (size < 4) {
+                    return "error size must be at least 4";
+                }
+                final String strategy = (words.length > 2) ? words[2] : DotStrategies.NAMES[0];
+                final long budget = (words.length > 3) ? Long.parseLong(words[3]) : 0;
+                final long id = nextId.incrementAndGet();
+                return run(id, new Callable<String>() {
+                    public String call() {
+                        Session session = new Session(id, new GameModel(size), strategy, budget);
+                        session.wake();
+                        shardOf(id).sessions.put(id, session);
+                        Point dot = session.model.getCurrentDot();
+                        return "ok " + id + " " + size + " " + dot.getX() + " " + dot.getY();
+                    }
+                });
+            }
+            final long id = Long.parseLong(words[1]);
+            if (words[0].equals("select")) {
+                final int x = Integer.parseInt(words[2]);
+                final int y = Integer.parseInt(words[3]);
+                return run(id, new Callable<String>() {
+                    public String call() {
+                        Session session = session(id);
+                        if (session == null) {
+                            return "error no session " + id;
+                        }
+                        if (session.status != GameEngine.PLAYING) {
+                            return "error game over";
+                        }
+                        int result = session.engine.play(session.model, x, y);
+                        if (result == GameEngine.ILLEGAL) {
+                            return "error cannot select " + x + " " + y;
+                        }
+                        session.status = result;
+                        Point dot = session.model.getCurrentDot();
+                        return "ok " + id + " " + statusName(result) + " " + dot.getX() + " "
+                                + dot.getY() + " " + session.model.getNumberOfSteps();
+                    }
+                });
+            }
+            if (words[0].equals("board")) {
+                return run(id, new Callable<String>() {
+                    public String call() {
+                        Session session = session(id);
+                        if (session == null) {
+                            return "error no session " + id;
+                        }
+                        GameModel model = session.model;
+                        int size = model.getSize();
+                        Point dot = model.getCurrentDot();
+                        StringBuilder reply = new StringBuilder(64 + size * size);
+                        reply.append("ok ").append(id).append(' ').append(size).append(' ')
+                                .append(dot.getX()).append(' ').append(dot.getY()).append(' ')
+                                .append(model.getNumberOfSteps()).append(' ');
+                        for (int i = 0; i < size; i++) {
+                            for (int j = 0; j < size; j++) {
+                                reply.append((char) ('0' + model.getCurrentStatus(i, j)));
+                            }
+                        }
+                        return reply.toString();
+                    }
+                });
+            }
+            if (words[0].equals("close")) {
+                return run(id, new Callable<String>() {
+                    public String call() {
+                        return (shardOf(id).sessions.remove(id) == null)
+                                ? "error no session " + id : "ok " + id;
+                    }
+                });
+            }
+            return "error unknown command " + words[0];
+        }
+        catch (ArrayIndexOutOfBoundsException e) {
+            return "error missing argument";
+        }
+        catch (IllegalArgumentException e) {
+            // includes NumberFormatException
+            return "error " + e.getMessage();
+        }
+    }
+
+    /**
+     * Helper method: runs a command on the shard of a session and waits for its reply
+     */
+    private String run(long id, Callable<String> command) {
+        try {
+            return shardOf(id).thread.submit(command).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "error interrupted";
+        }
+        catch (ExecutionException e) {
+            return "error " + e.getCause();
+        }
+    }
+
+    /**
+     * Helper method: the shard of a session
+     */
+    private Shard shardOf(long id) {
+        return shards[(int) (id % shards.length)];
+    }
+
+    /**
+     * Helper method: finds a session and restores it if it was evicted (shard thread only)
+     */
+    private Session session(long id) {
+        Session session = shardOf(id).sessions.get(id);
+        if (session != null) {
+            session.wake();
+        }
+        return session;
+    }
+
+    private static String statusName(int status) {
+        switch (status) {
+            case GameEngine.WON:
+                return "won";
+            case GameEngine.LOST:
+                return "lost";
+            default:
+                return "playing";
+        }
+    }
+
+    /**
+     * Starts a server
+     *
+     * @param args the port (optional) and the number of shards (optional)
+     */
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int numberOfShards = (args.length > 1) ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        System.out.println("Circle the Dot server listening on localhost:" + port);
+        new GameServer(numberOfShards).serve(port);
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.ArrayList;
+
+/**
+ * The class <b>GameTimeline</b> records the moves of the current line of play so that
+ * any earlier position can be rebuilt quickly. It stores a full snapshot of the model
+ * every CHECKPOINT_INTERVAL moves, and only the selected dot and the new position of
+ * the blue dot for each move in between. A position is rebuilt by decoding the nearest
+ * checkpoint and replaying at most CHECKPOINT_INTERVAL - 1 moves, so jumping costs the
+ * same whatever the length of the game.
+ *
+ * Checkpoints are kept encoded with <b>BoardCodec</b>. With several blue dots a move
+ * records only the first one, so every position is a checkpoint instead.
+ *
+ * Positions are identified by their number of steps, as returned by
+ * GameModel.getNumberOfSteps().
+ */
+public class GameTimeline {
+
+    /**
+     * Number of moves between two snapshots
+     */
+    public static final int CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * Number of ints recorded per move: selected x, selected y, dot x, dot y
+     */
+    private static final int MOVE_WIDTH = 4;
+
+    /**
+     * The number of steps of the first recorded position
+     */
+    private int firstStep;
+
+    /**
+     * Number of moves between two checkpoints of this timeline: CHECKPOINT_INTERVAL, or
+     * 1 with several blue dots
+     */
+    private int interval;
+
+    /**
+     * checkpoints.get(k) is the encoded position after k * interval moves
+     */
+    private ArrayList<byte[]> checkpoints;
+
+    /**
+     * The recorded moves, MOVE_WIDTH ints per move
+     */
+    private int[] moves;
+    private int numberOfMoves;
+
+    /**
+     * Constructor
+     *
+     * @param start the position the timeline starts from
+     */
+    public GameTimeline(GameModel start) {
+        restart(start);
+    }
+
+    /**
+     * Forgets every recorded move and starts over from the given position
+     *
+     * @param start the new first position
+     */
+    public void restart(GameModel start) {
+        firstStep = start.getNumberOfSteps();
+        interval = (start.getDotCount() > 1) ? 1 : CHECKPOINT_INTERVAL;
+        checkpoints = new ArrayList<byte[]>();
+        checkpoints.add(BoardCodec.encode(start));
+        moves = new int[MOVE_WIDTH * CHECKPOINT_INTERVAL];
+        numberOfMoves = 0;
+    }
+
+    /**
+     * Records a move played from the position with the given number of steps. Any
+     * move previously recorded from that position or a later one is discarded.
+     *
+     * @param after the model once the move has been played (the dot included)
+     * @param selectedX the x coordinate of the dot selected by the player
+     * @param selectedY the y coordinate of the dot selected by the player
+     * @param dotX the new x coordinate of the blue dot, -1 if it left the board
+     * @param dotY the new y coordinate of the blue dot
+     */
+    public void record(GameModel after, int selectedX, int selectedY, int dotX, int dotY) {
+        int index = after.getNumberOfSteps() - 1 - firstStep;
+        if (index < 0 || index > numberOfMoves) {
+            // the move does not continue this timeline
+            restart(after);
+            return;
+        }
+        truncate(index);
+
+        if (moves.length < (numberOfMoves + 1) * MOVE_WIDTH) {
+            int[] larger = new int[moves.length * 2];
+            System.arraycopy(moves, 0, larger, 0, moves.length);
+            moves = larger;
+        }
+        int offset = numberOfMoves * MOVE_WIDTH;
+        moves[offset] = selectedX;
+        moves[offset + 1] = selectedY;
+        moves[offset + 2] = dotX;
+        moves[offset + 3] = dotY;
+        numberOfMoves++;
+
+        if (numberOfMoves % interval == 0) {
+            checkpoints.add(BoardCodec.encode(after));
+        }
+    }
+
+    /**
+     * Getter for the number of steps of the first recorded position
+     *
+     * @return the first step of the timeline
+     */
+    public int getFirstStep() {
+        return firstStep;
+    }
+
+    /**
+     * Getter for the number of steps of the last recorded position
+     *
+     * @return the last step of the timeline
+     */
+    public int getLastStep() {
+        return firstStep + numberOfMoves;
+    }
+
+    /**
+     * Rebuilds the position reached after the given number of steps
+     *
+     * @param step a number of steps between getFirstStep() and getLastStep()
+     * @return a new model, independent of the timeline
+     */
+    public GameModel modelAt(int step) {
+        int index = step - firstStep;
+        if (index < 0 || index > numberOfMoves) {
+            throw new IndexOutOfBoundsException("No position for step " + step);
+        }
+        int checkpoint = index / interval;
+        GameModel model = BoardCodec.decode(checkpoints.get(checkpoint));
+        for (int i = checkpoint * interval; i < index; i++) {
+            int offset = i * MOVE_WIDTH;
+            model.select(moves[offset], moves[offset + 1]);
+            model.setCurrentDot(moves[offset + 2], moves[offset + 3]);
+        }
+        return model;
+    }
+
+    /**
+     * Discards the moves recorded after the given move index
+     *
+     * @param index the number of moves to keep
+     */
+    private void truncate(int index) {
+        numberOfMoves = index;
+        int keep = index / interval + 1;
+        while (checkpoints.size() > keep) {
+            checkpoints.remove(checkpoints.size() - 1);
+        }
+    }
+}
@@ -18,6 +18,18 @@ public class GameView extends JFrame {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Time between two refreshes of the board, in milliseconds (one display frame).
+     * Can be overridden with -Dview.frame=N
+     */
+    private static final int FRAME_MILLIS = Integer.getInteger("view.frame", 16);
+
+    /**
+     * Number of DotButtons created per event while the board is being attached, so that
+     * the window keeps painting and responding on large boards
+     */
+    private static final int BUTTONS_PER_STEP = 2000;
+
     /**
      * Reference to the view of the board
      */
@@ -27,27 +39,64 @@ public class GameView extends JFrame {
 
     private JButton buttonUndo;
     private JButton buttonRedo;
+
+    /**
+     * The buttons, and the Hint button, added to them on boards with a tablebase
+     */
+    private JPanel control;
+    private JButton buttonHint;
+
+    /**
+     * Slider used to jump to any move of the game
+     */
+    private JSlider timeline;
+
+    /**
+     * Fires once, a frame after the first change that was not shown yet
+     */
+    private Timer refresh;
+
+    /**
+     * Shown in place of the board until it is attached
+     */
+    private JLabel placeholder;
  
   
     /**
-     * Constructor used for initializing the Frame
+     * Constructor used for initializing the Frame. The frame is shown right away, with a
+     * placeholder of about the size of the board; the board itself is added by attachModel
+     * once the model is ready
      * 
-     * @param model
-     *            the model of the game (already initialized)
+     * @param size
+     *            the expected size of the board
      * @param gameController
      *            the controller
      */
 
-    public GameView(GameModel model, GameController gameController) {
+    public GameView(int size, GameController gameController) {
         super("Circle the Dot");
         controller = gameController;
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     	setBackground(Color.WHITE);
 
-        gameModel = model;
-    	board = new BoardView(model, gameController);
-    	add(board, BorderLayout.CENTER);
+        int cell = IconAtlas.cellSizeFor(size);
+        placeholder = new JLabel("Loading...", SwingConstants.CENTER);
+        placeholder.setPreferredSize(new Dimension(60 + size * (cell + 2) + 2,
+                20 + size * (cell + 4)));
+        placeholder.setOpaque(true);
+        placeholder.setBackground(Color.WHITE);
+    	add(placeholder, BorderLayout.CENTER);
+
+        refresh = new Timer(FRAME_MILLIS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (board != null) {
+                    board.update();
+                }
+            }
+        });
+        refresh.setRepeats(false);
+        refresh.setCoalesce(true);
 
  
         JButton buttonReset = new JButton("Reset");
@@ -63,19 +112,39 @@ public class GameView extends JFrame {
         buttonUndo.setEnabled(false);
         buttonUndo.addActionListener(gameController);
 
+        JButton buttonSave = new JButton("Save");
+        buttonSave.setFocusPainted(false);
+        buttonSave.addActionListener(gameController);
+
+        JButton buttonLoad = new JButton("Load");
+        buttonLoad.setFocusPainted(false);
+        buttonLoad.addActionListener(gameController);
+
         buttonRedo = new JButton("Redo");
         buttonRedo.setFocusPainted(false);
         buttonRedo.setEnabled(false);
         buttonRedo.addActionListener(gameController);
 
+        buttonHint = new JButton("Hint");
+        buttonHint.setFocusPainted(false);
+        buttonHint.addActionListener(gameController);
+
+        timeline = new JSlider(0, 0, 0);
+        timeline.setBackground(Color.WHITE);
+        timeline.setToolTipText("Move");
+        timeline.addChangeListener(gameController);
+
 
         // TODO make layout nicer.
-    	JPanel control = new JPanel();
+    	control = new JPanel();
     	control.setBackground(Color.WHITE);
         control.add(buttonReset);
         control.add(buttonExit);
         control.add(buttonUndo);
         control.add(buttonRedo);
+        control.add(buttonSave);
+        control.add(buttonLoad);
+        control.add(timeline);
     	add(control, BorderLayout.SOUTH);
 
     	pack();
@@ -85,10 +154,83 @@ public class GameView extends JFrame {
     }
 
     /**
-     * Update the Board View
+     * Replaces the placeholder with the view of a model. The DotButtons are created a few
+     * rows per event, the rows appearing as they are created, and the frame is resized
+     * to the board once they all are
+     *
+     * @param model
+     *            the model of the game (already initialized)
+     * @param ready
+     *            run on the event dispatch thread once the board is complete
+     */
+    public void attachModel(GameModel model, final Runnable ready) {
+        gameModel = model;
+        board = new BoardView(model, controller, 0);
+        remove(placeholder);
+        if (model.getDotCount() == 1 && Tablebase.fileFor(model.getSize()).exists()) {
+            // perfect hints, the table being mapped on the first click (see Tablebase)
+            control.add(buttonHint, control.getComponentCount() - 1);
+        }
+        add(board, BorderLayout.CENTER);
+        validate();
+
+        final int rowsPerStep = Math.max(1, BUTTONS_PER_STEP / model.getSize());
+        final Timer builder = new Timer(0, null);
+        builder.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (board.addRows(rowsPerStep)) {
+                    builder.stop();
+                    pack();
+                    board.update();
+                    ready.run();
+                }
+                else {
+                    board.revalidate();
+                }
+            }
+        });
+        builder.start();
+    }
+
+    /**
+     * Update the Board View now, including any change waiting for the next frame
      */
     public void update() {
-        board.update();
+        refresh.stop();
+        if (board != null) {
+            board.update();
+        }
+    }
+
+    /**
+     * Paints the frame, and records the first time it is painted (see StartupMetrics)
+     *
+     * @param g the graphics context
+     */
+    public void paint(Graphics g) {
+        super.paint(g);
+        StartupMetrics.firstPaint();
+    }
+
+    /**
+     * Ask for the Board View to be updated at the next frame. All the changes made to the
+     * model until then (a burst of undo or redo, a scripted sequence of moves) are shown
+     * by a single update, which only touches the dots that differ from what is displayed
+     */
+    public void scheduleUpdate() {
+        if (!refresh.isRunning()) {
+            refresh.start();
+        }
+    }
+
+    /**
+     * Highlights a dot on the board until the next change of the board
+     * @param cell the cell (see Cells) of the dot
+     */
+    public void showHint(int cell) {
+        if (board != null) {
+            board.showHint(cell);
+        }
     }
 
     /**
@@ -97,7 +239,9 @@ public class GameView extends JFrame {
      */
     public void setModel(GameModel model) {
         gameModel = model;
-        board.setModel(gameModel);
+        if (board != null) {
+            board.setModel(gameModel);
+        }
     }
 
     /**
@@ -127,4 +271,17 @@ public class GameView extends JFrame {
     public void enableRedoButton() {
         buttonRedo.setEnabled(true);
     }
+
+    /**
+     * Update the range and position of the timeline slider. The three values are set at once
+     * so that the slider only notifies its listener with the final position
+     *
+     * @param firstStep the first move that can be reached
+     * @param lastStep the last move that can be reached
+     * @param currentStep the move currently displayed
+     */
+    public void updateTimeline(int firstStep, int lastStep, int currentStep) {
+        timeline.getModel().setRangeProperties(currentStep, 0, firstStep, lastStep, false);
+        timeline.setEnabled(lastStep > firstStep);
+    }
 }
@@ -0,0 +1,97 @@
+import java.util.Random;
+
+/**
+ * The class <b>GreedyCutPlayerStrategy</b> selects, among the dots next to the blue dot,
+ * the one that hurts its escape the most: an open exit next to the blue dot is always
+ * closed first, otherwise the strategy keeps the cut after which the blue dot is the
+ * farthest from the border, then has the fewest shortest escape routes (see EscapeMap).
+ * That is at most six escape maps, so O(N^2) per move.
+ */
+public class GreedyCutPlayerStrategy implements PlayerStrategy {
+
+    public static final String NAME = "greedy";
+
+    private final EscapeMap map = new EscapeMap();
+    private final int[] around = new int[Cells.MAX_NEIGHBOURS];
+    private final int[] next = new int[Cells.MAX_NEIGHBOURS];
+    private boolean[] blocked;
+    private final Random generator;
+
+    /**
+     * Constructor
+     *
+     * @param generator the source of randomness used to break ties
+     */
+    public GreedyCutPlayerStrategy(Random generator) {
+        this.generator = generator;
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public int nextMove(GameModel model, long deadline) {
+        int size = model.getSize();
+        if (blocked == null || blocked.length != size * size) {
+            blocked = new boolean[size * size];
+        }
+        DotStrategies.fillBlocked(model, blocked);
+        int dot = model.getCurrentDotCell();
+        if (Cells.isOnBorder(dot, size)) {
+            // the blue dot exits whatever the player does
+            return PlayerStrategies.anyAvailable(model, generator);
+        }
+        Cells.neighbours(dot, size, around);
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            if (!blocked[around[k]] && Cells.isOnBorder(around[k], size)) {
+                return around[k];
+            }
+        }
+
+        int best = Cells.NONE;
+        int bestDistance = -1;
+        long bestRoutes = Long.MAX_VALUE;
+        int ties = 0;
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            int cut = around[k];
+            if (blocked[cut]) {
+                continue;
+            }
+            blocked[cut] = true;
+            map.compute(blocked, size);
+            blocked[cut] = false;
+
+            // distance and routes of the dot itself: through its best remaining neighbour
+            int distance = EscapeMap.UNREACHABLE;
+            long routes = 0;
+            Cells.neighbours(dot, size, next);
+            for (int n = 0; n < Cells.MAX_NEIGHBOURS; n++) {
+                int w = next[n];
+                if (w == cut || blocked[w]) {
+                    continue;
+                }
+                int d = map.getDistance(w);
+                if (d < distance) {
+                    distance = d;
+                    routes = map.getRoutes(w);
+                }
+                else if (d == distance && d != EscapeMap.UNREACHABLE) {
+                    routes += map.getRoutes(w);
+                }
+            }
+
+            if (distance > bestDistance || (distance == bestDistance && routes < bestRoutes)) {
+                best = cut;
+                bestDistance = distance;
+                bestRoutes = routes;
+                ties = 1;
+            }
+            else if (distance == bestDistance && routes == bestRoutes
+                    && generator.nextInt(++ties) == 0) {
+                best = cut;
+            }
+        }
+        // the blue dot is already circled: any move will do
+        return (best == Cells.NONE) ? PlayerStrategies.anyAvailable(model, generator) : best;
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * The class <b>HistoryStack</b> is a bounded-memory <b>Stack</b> of game states used
+ * for the undo and redo history. The most recent entries are kept in a ring buffer;
+ * once the buffer holds more than the configured number of entries (or bytes), the
+ * oldest entries are spilled to a temporary file by a background thread. Spilled
+ * entries are read back lazily, only when the user undoes past the ring buffer, so
+ * the depth of the history is unlimited while its memory footprint stays bounded.
+ *
+ * Entries are stored encoded with <b>BoardCodec</b>, both in memory and on disk. A
+ * pushed model is encoded immediately, so it can be modified afterwards, and every
+ * pop returns a new model.
+ */
+public class HistoryStack implements Stack<GameModel> {
+
+    /**
+     * Rough per-entry overhead (array header, reference) added to the encoded size
+     */
+    private static final int ENTRY_OVERHEAD = 24;
+
+    /**
+     * Maximum number of entries and bytes kept in memory
+     */
+    private final int maxEntries;
+    private final long maxBytes;
+
+    /**
+     * The ring buffer holding the most recent entries. head is the slot of the
+     * next push, count the number of entries currently in the buffer.
+     */
+    private final byte[][] ring;
+    private int head;
+    private int count;
+    private long bytes;
+
+    /**
+     * Number of entries that have been handed to the spiller (written or pending)
+     */
+    private int spilled;
+
+    /**
+     * Single background thread doing all of the disk work. Since it is
+     * single-threaded, reads are always ordered after the pending writes.
+     */
+    private ExecutorService spiller;
+
+    /**
+     * The spill file and the offsets of the entries it holds. Only accessed
+     * from the spiller thread.
+     */
+    private File spillFile;
+    private RandomAccessFile spillData;
+    private long[] offsets = new long[16];
+    private int diskCount;
+
+    /**
+     * Constructor
+     *
+     * @param maxEntries the maximum number of entries kept in memory (at least 1)
+     * @param maxBytes the approximate maximum number of bytes kept in memory
+     */
+    public HistoryStack(int maxEntries, long maxBytes) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        ring = new byte[maxEntries][];
+    }
+
+    public boolean isEmpty() {
+        return count == 0 && spilled == 0;
+    }
+
+    public void push(GameModel model) {
+        if (model == null) {
+            throw new NullPointerException();
+        }
+        byte[] data = BoardCodec.encode(model);
+        long size = data.length + ENTRY_OVERHEAD;
+        while (count == maxEntries || (count > 0 && bytes + size > maxBytes)) {
+            evictOldest();
+        }
+        ring[head] = data;
+        head = (head + 1) % maxEntries;
+        count++;
+        bytes += size;
+    }
+
+    public GameModel peek() {
+        if (count > 0) {
+            return BoardCodec.decode(ring[(head - 1 + maxEntries) % maxEntries]);
+        }
+        if (spilled == 0) {
+            throw new EmptyStackException();
+        }
+        return BoardCodec.decode(await(spiller().submit(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                return readEntry(diskCount - 1);
+            }
+        })));
+    }
+
+    public GameModel pop() {
+        if (count > 0) {
+            head = (head - 1 + maxEntries) % maxEntries;
+            byte[] data = ring[head];
+            ring[head] = null; // scrubbing the memory
+            bytes -= data.length + ENTRY_OVERHEAD;
+            count--;
+            return BoardCodec.decode(data);
+        }
+        if (spilled == 0) {
+            throw new EmptyStackException();
+        }
+        spilled--;
+        return BoardCodec.decode(await(spiller().submit(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                byte[] data = readEntry(diskCount - 1);
+                diskCount--;
+                spillData.setLength(offsets[diskCount]);
+                return data;
+            }
+        })));
+    }
+
+    /**
+     * Removes every entry, both in memory and on disk
+     */
+    public void clear() {
+        for (int i = 0; i < maxEntries; i++) {
+            ring[i] = null;
+        }
+        head = 0;
+        count = 0;
+        bytes = 0;
+        if (spilled > 0) {
+            spilled = 0;
+            spiller().submit(new Callable<Void>() {
+                public Void call() throws IOException {
+                    diskCount = 0;
+                    spillData.setLength(0);
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * Releases the background thread and deletes the spill file. The stack
+     * must not be used afterwards.
+     */
+    public void close() {
+        clear();
+        if (spiller != null) {
+            spiller.submit(new Callable<Void>() {
+                public Void call() throws IOException {
+                    if (spillData != null) {
+                        spillData.close();
+                        spillFile.delete();
+                    }
+                    return null;
+                }
+            });
+            spiller.shutdown();
+        }
+    }
+
+    /**
+     * Moves the oldest in-memory entry to the spill file. The entry is written
+     * on the spiller thread so that the caller never waits for the disk.
+     */
+    private void evictOldest() {
+        int tail = (head - count + maxEntries) % maxEntries;
+        final byte[] data = ring[tail];
+        ring[tail] = null;
+        bytes -= data.length + ENTRY_OVERHEAD;
+        count--;
+        spilled++;
+        spiller().submit(new Callable<Void>() {
+            public Void call() throws IOException {
+                writeEntry(data);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Lazily starts the spiller thread
+     *
+     * @return the spiller
+     */
+    private ExecutorService spiller() {
+        if (spiller == null) {
+            spiller = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "history-spiller");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return spiller;
+    }
+
+    /**
+     * Waits for a disk read to complete
+     *
+     * @param future the pending read
+     * @return the entry that was read
+     */
+    private static byte[] await(Future<byte[]> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading history", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Error reading spilled history", e.getCause());
+        }
+    }
+
+    /**
+     * Appends an entry to the spill file (spiller thread only)
+     *
+     * @param data the encoded entry to write
+     * @throws IOException if the spill file cannot be written
+     */
+    private void writeEntry(byte[] data) throws IOException {
+        if (spillData == null) {
+            spillFile = File.createTempFile("circlethedot-history", ".bin");
+            spillFile.deleteOnExit();
+            spillData = new RandomAccessFile(spillFile, "rw");
+        }
+        long offset = spillData.length();
+        spillData.seek(offset);
+        spillData.writeInt(data.length);
+        spillData.write(data);
+
+        if (diskCount == offsets.length) {
+            long[] larger = new long[offsets.length * 2];
+            System.arraycopy(offsets, 0, larger, 0, offsets.length);
+            offsets = larger;
+        }
+        offsets[diskCount++] = offset;
+    }
+
+    /**
+     * Reads an entry back from the spill file (spiller thread only)
+     *
+     * @param index the index of the entry, 0 being the oldest
+     * @return the encoded entry
+     * @throws IOException if the spill file cannot be read
+     */
+    private byte[] readEntry(int index) throws IOException {
+        spillData.seek(offsets[index]);
+        byte[] data = new byte[spillData.readInt()];
+        spillData.readFully(data);
+        return data;
+    }
+}
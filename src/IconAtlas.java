@@ -0,0 +1,254 @@
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+
+/**
+ * The class <b>IconAtlas</b> holds the images of the dots of <b>DotButton</b>. The three
+ * images (data/ball-0.png, data/ball-1.png and data/ball-2.png, grey, orange and blue)
+ * are read from the classpath, or else from the data directory of the working directory,
+ * and decoded once into a single image, the atlas, one image next to the other.
+ *
+ * The icons of a given cell size are cut from a copy of the atlas scaled once for that size
+ * and for the scale factor of the screen (HiDPI), and cached: drawing a dot only copies
+ * pixels, it never decodes nor resamples an image. Large boards use smaller cells (see
+ * cellSizeFor) so that they fit on the screen.
+ *
+ * preload() decodes the atlas and scales it for the board about to be shown on a
+ * background thread, while the rest of the game is initialized.
+ */
+public class IconAtlas {
+
+    /**
+     * Number of images, one per status of a dot
+     */
+    public static final int NUM_COLOURS = 3;
+
+    /**
+     * Size (in pixels) of the images, and the smallest size a cell can be reduced to
+     */
+    public static final int NATIVE_SIZE = 40;
+    public static final int MIN_CELL_SIZE = 6;
+
+    /**
+     * Gap the layout of BoardView puts between two cells, and space around the board
+     */
+    private static final int CELL_GAP = 2;
+    private static final int BOARD_MARGIN = 200;
+
+    private static final FutureTask<BufferedImage> atlas =
+            new FutureTask<BufferedImage>(new Callable<BufferedImage>() {
+                public BufferedImage call() throws IOException {
+                    return load();
+                }
+            });
+
+    /**
+     * The icons already built, by size of the cells and size in device pixels
+     */
+    private static final ConcurrentMap<Integer, Icon[]> cache =
+            new ConcurrentHashMap<Integer, Icon[]>();
+
+    /**
+     * Starts decoding the atlas, and scaling it for the cells of a board of the given size,
+     * on a background thread. Does nothing more if the atlas is already decoded
+     *
+     * @param boardSize the size of the board that will be shown
+     */
+    public static void preload(final int boardSize) {
+        Thread loader = new Thread("icon-atlas") {
+            public void run() {
+                atlas.run();
+                try {
+                    getIcons(cellSizeFor(boardSize));
+                }
+                catch (IllegalStateException e) {
+                    // reported again to the first DotButton
+                }
+            }
+        };
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Getter for the icons of the three statuses for cells of a given size, on the default
+     * screen. Decodes the atlas if preload() was not called, and waits for it if it is being
+     * decoded
+     *
+     * @param cellSize the size of a cell, in (logical) pixels
+     * @return the icons, indexed by GameModel.AVAILABLE, SELECTED and DOT
+     * @throws IllegalStateException if the images cannot be read
+     */
+    public static Icon[] getIcons(int cellSize) {
+        double scale = screenScale();
+        int pixels = Math.max(1, (int) Math.round(cellSize * scale));
+        Integer key = (pixels << 16) | cellSize;
+        Icon[] icons = cache.get(key);
+        if (icons == null) {
+            icons = cut(scaled(decoded(), pixels), cellSize, pixels);
+            Icon[] previous = cache.putIfAbsent(key, icons);
+            if (previous != null) {
+                icons = previous;
+            }
+        }
+        return icons;
+    }
+
+    /**
+     * Computes the size of the cells of a board, so that the whole board fits on the screen.
+     * The cells are never larger than the images, nor smaller than MIN_CELL_SIZE
+     *
+     * @param boardSize the size of the board
+     * @return the size of a cell, in (logical) pixels
+     */
+    public static int cellSizeFor(int boardSize) {
+        int available;
+        if (GraphicsEnvironment.isHeadless()) {
+            available = 1024;
+        }
+        else {
+            Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getMaximumWindowBounds();
+            available = Math.min(screen.width, screen.height);
+        }
+        int cell = (available - BOARD_MARGIN) / (boardSize + 1) - CELL_GAP;
+        return Math.max(MIN_CELL_SIZE, Math.min(NATIVE_SIZE, cell));
+    }
+
+    /**
+     * Helper method: the scale factor between logical and device pixels of the default
+     * screen, 1 if it cannot be known
+     */
+    private static double screenScale() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return 1.0;
+        }
+        AffineTransform transform = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration().getDefaultTransform();
+        return Math.max(1.0, transform.getScaleX());
+    }
+
+    /**
+     * Helper method: waits for the atlas, decoding it on this thread if nobody started to
+     */
+    private static BufferedImage decoded() {
+        atlas.run();
+        try {
+            return atlas.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the images", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot read the images of the dots", e.getCause());
+        }
+    }
+
+    /**
+     * Helper method: reads the three images and draws them side by side in the atlas
+     */
+    private static BufferedImage load() throws IOException {
+        BufferedImage result = new BufferedImage(NUM_COLOURS * NATIVE_SIZE, NATIVE_SIZE,
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            for (int i = 0; i < NUM_COLOURS; i++) {
+                String name = "data/ball-" + i + ".png";
+                URL resource = IconAtlas.class.getResource("/" + name);
+                BufferedImage image = (resource != null) ? ImageIO.read(resource)
+                        : ImageIO.read(new File(name));
+                if (image == null) {
+                    throw new IOException("Cannot decode " + name);
+                }
+                g.drawImage(image, i * NATIVE_SIZE, 0, NATIVE_SIZE, NATIVE_SIZE, null);
+            }
+        }
+        finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    /**
+     * Helper method: a copy of the atlas whose images are the given number of pixels wide.
+     * Reductions by more than half are done in steps of half, which keeps the quality of a
+     * single high-quality scale at the price of a bilinear one
+     */
+    private static BufferedImage scaled(BufferedImage source, int pixels) {
+        BufferedImage current = source;
+        int size = NATIVE_SIZE;
+        do {
+            size = Math.max(pixels, (size > 2 * pixels) ? size / 2 : pixels);
+            BufferedImage next = new BufferedImage(NUM_COLOURS * size, size,
+                    BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                        RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, NUM_COLOURS * size, size, null);
+            }
+            finally {
+                g.dispose();
+            }
+            current = next;
+        } while (size != pixels);
+        return current;
+    }
+
+    /**
+     * Helper method: the icons of a scaled atlas
+     */
+    private static Icon[] cut(BufferedImage image, int cellSize, int pixels) {
+        Icon[] icons = new Icon[NUM_COLOURS];
+        for (int i = 0; i < NUM_COLOURS; i++) {
+            icons[i] = new AtlasIcon(image, i * pixels, pixels, cellSize);
+        }
+        return icons;
+    }
+
+    /**
+     * An icon drawn from a square of a scaled atlas. The square has as many pixels as the
+     * icon covers on the screen, so it is copied without being resampled
+     */
+    private static class AtlasIcon implements Icon {
+        private final BufferedImage image;
+        private final int left;
+        private final int pixels;
+        private final int size;
+
+        AtlasIcon(BufferedImage image, int left, int pixels, int size) {
+            this.image = image;
+            this.left = left;
+            this.pixels = pixels;
+            this.size = size;
+        }
+
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.drawImage(image, x, y, x + size, y + size, left, 0, left + pixels, pixels, null);
+        }
+
+        public int getIconWidth() {
+            return size;
+        }
+
+        public int getIconHeight() {
+            return size;
+        }
+    }
+}
@@ -16,19 +16,18 @@ public class LinkedQueue<E> implements Queue<E> {
 
     public E peek() {
 
-        if (front.value == null && rear.value == null) {
+        if (isEmpty()) {
             throw new EmptyQueueException();
         }
         return front.value;
     }
 
     public void enqueue( E o ) {
-        Elem<E> newElem;
-        newElem = new Elem<E>( o, null );
-
-        if (newElem == null) {
+        if (o == null) {
             throw new NullPointerException();
         }
+        Elem<E> newElem;
+        newElem = new Elem<E>( o, null );
 
         if ( rear == null ) {
             front = rear = newElem;
@@ -40,23 +39,16 @@ public class LinkedQueue<E> implements Queue<E> {
 
     public E dequeue() throws EmptyQueueException {
 
-        try {
-
-            if (isEmpty()) {
-                throw new EmptyQueueException();
-            }
-            E result = front.value;
-            if ( front != null & front.next == null ) {
-                front = rear = null;
-            } else {
-                front = front.next;
-            }
-            return result;
+        if (isEmpty()) {
+            throw new EmptyQueueException();
         }
-        catch (EmptyQueueException e) {
-            e.printStackTrace();
+        E result = front.value;
+        if ( front.next == null ) {
+            front = rear = null;
+        } else {
+            front = front.next;
         }
-        return null;
+        return result;
     }
 
 
@@ -0,0 +1,135 @@
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * The class <b>LockFreeQueue</b> is an unbounded <b>Queue</b> that can be shared by any
+ * number of producer and consumer threads without locking. It implements the algorithm of
+ * Michael and Scott: a linked list with a dummy first element, where enqueue links the new
+ * element after the last one with a compare-and-set and then swings the tail, and any
+ * thread that finds the tail lagging behind helps to advance it.
+ *
+ * Null elements are not allowed.
+ */
+public class LockFreeQueue<E> implements Queue<E> {
+
+    private static class Elem<T> {
+
+        private volatile T value;
+        private volatile Elem<T> next;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Elem, Elem> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Elem.class, Elem.class, "next");
+
+        private Elem(T value) {
+            this.value = value;
+        }
+
+        private boolean casNext(Elem<T> expected, Elem<T> update) {
+            return NEXT.compareAndSet(this, expected, update);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LockFreeQueue, Elem> HEAD =
+            AtomicReferenceFieldUpdater.newUpdater(LockFreeQueue.class, Elem.class, "head");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LockFreeQueue, Elem> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(LockFreeQueue.class, Elem.class, "tail");
+
+    /**
+     * head is the dummy element preceding the first value; tail is the last element
+     * or, transiently, the one before it
+     */
+    private volatile Elem<E> head;
+    private volatile Elem<E> tail;
+
+    public LockFreeQueue() {
+        head = tail = new Elem<E>(null);
+    }
+
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    public void enqueue(E o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        Elem<E> newElem = new Elem<E>(o);
+        while (true) {
+            Elem<E> last = tail;
+            Elem<E> next = last.next;
+            if (last != tail) {
+                continue;
+            }
+            if (next == null) {
+                if (last.casNext(null, newElem)) {
+                    TAIL.compareAndSet(this, last, newElem);
+                    return;
+                }
+            }
+            else {
+                // the tail is lagging behind: help the other thread
+                TAIL.compareAndSet(this, last, next);
+            }
+        }
+    }
+
+    public E dequeue() throws EmptyQueueException {
+        E result = poll();
+        if (result == null) {
+            throw new EmptyQueueException();
+        }
+        return result;
+    }
+
+    /**
+     * Removes and returns the first element, if any. Unlike isEmpty followed by dequeue,
+     * this cannot fail because of another consumer.
+     *
+     * @return the first element, or null if the queue is empty
+     */
+    public E poll() {
+        while (true) {
+            Elem<E> first = head;
+            Elem<E> last = tail;
+            Elem<E> next = first.next;
+            if (first != head) {
+                continue;
+            }
+            if (next == null) {
+                return null;
+            }
+            if (first == last) {
+                TAIL.compareAndSet(this, last, next);
+                continue;
+            }
+            E result = next.value;
+            if (HEAD.compareAndSet(this, first, next)) {
+                // next becomes the dummy element
+                next.value = null;
+                first.next = first; // scrubbing the memory, never read again
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns the first element without removing it
+     *
+     * @return the first element, or null if the queue is empty
+     */
+    public E peek() {
+        while (true) {
+            Elem<E> first = head;
+            Elem<E> next = first.next;
+            if (next == null) {
+                return null;
+            }
+            E result = next.value;
+            if (first == head && result != null) {
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.Random;
+
+/**
+ * The class <b>LookaheadDotStrategy</b> looks one move of the player ahead: for each
+ * neighbour the blue dot could step on, it considers every cell next to it that the player
+ * could select in reply, and keeps the neighbour whose worst reply still leaves the dot
+ * the shortest distance to the exit (then the most escape routes). That is at most 36
+ * escape maps, so O(N^2) per move.
+ *
+ * If the deadline passes during the evaluation, the answer of <b>EscapeCountDotStrategy</b>
+ * is used instead. Positions seen again (undo, redo, replays) are answered from the
+ * DecisionCache of the GameEngine, immediately and consistently.
+ */
+public class LookaheadDotStrategy implements DotStrategy {
+
+    public static final String NAME = "lookahead";
+
+    private final EscapeMap map = new EscapeMap();
+    private final int[] around = new int[Cells.MAX_NEIGHBOURS];
+    private final int[] replies = new int[Cells.MAX_NEIGHBOURS];
+    private boolean[] blocked;
+    private final Random generator;
+
+    /**
+     * Constructor
+     *
+     * @param generator the source of randomness used to break ties
+     */
+    public LookaheadDotStrategy(Random generator) {
+        this.generator = generator;
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public int nextMove(GameModel model, long deadline) {
+        int size = model.getSize();
+        if (blocked == null || blocked.length != size * size) {
+            blocked = new boolean[size * size];
+        }
+        DotStrategies.fillBlocked(model, blocked);
+        map.compute(blocked, size);
+        int dot = model.getCurrentDotCell();
+        int fallback = EscapeCountDotStrategy.bestNeighbour(dot, size, blocked, map, around,
+                generator);
+        if (fallback == Cells.NONE || Cells.isOnBorder(fallback, size)) {
+            return fallback;
+        }
+
+        // once the dot has moved, its current cell is free again
+        blocked[dot] = false;
+        Cells.neighbours(dot, size, around);
+        int best = fallback;
+        int bestDistance = EscapeMap.UNREACHABLE;
+        long bestRoutes = 0;
+        int ties = 0;
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            int w = around[k];
+            if (blocked[w] || Cells.isOnBorder(w, size)) {
+                continue;
+            }
+            int worstDistance = 0;
+            long worstRoutes = Long.MAX_VALUE;
+            Cells.neighbours(w, size, replies);
+            for (int r = 0; r < Cells.MAX_NEIGHBOURS; r++) {
+                int c = replies[r];
+                if (blocked[c]) {
+                    continue;
+                }
+                if (System.nanoTime() > deadline) {
+                    return fallback;
+                }
+                blocked[c] = true;
+                map.compute(blocked, size);
+                blocked[c] = false;
+                int distance = map.getDistance(w);
+                long routes = map.getRoutes(w);
+                if (distance > worstDistance || (distance == worstDistance && routes < worstRoutes)) {
+                    worstDistance = distance;
+                    worstRoutes = routes;
+                }
+            }
+            if (worstDistance == EscapeMap.UNREACHABLE) {
+                continue;
+            }
+            if (worstDistance < bestDistance
+                    || (worstDistance == bestDistance && worstRoutes > bestRoutes)) {
+                best = w;
+                bestDistance = worstDistance;
+                bestRoutes = worstRoutes;
+                ties = 1;
+            }
+            else if (worstDistance == bestDistance && worstRoutes == bestRoutes
+                    && generator.nextInt(++ties) == 0) {
+                best = w;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,252 @@
+import java.util.Random;
+
+/**
+ * The class <b>MonteCarloPlayerStrategy</b> chooses its move by simulation. The candidate
+ * moves are the available dots at most two steps away from the blue dot; the strategy
+ * plays a number of random games (playouts) from each of them and selects the one that
+ * was won the most often. Playouts are shared between the candidates with the UCB1 rule,
+ * so promising candidates get more of them (one level of Monte Carlo tree search).
+ *
+ * In a playout the blue dot follows its shortest path to the border, and the player
+ * blocks either that next step or another dot next to the blue dot, at random. Each turn
+ * of a playout computes one EscapeMap, so a playout costs O(N^3) at most, and a move
+ * O(playouts * N^3); the deadline stops the simulation early.
+ */
+public class MonteCarloPlayerStrategy implements PlayerStrategy {
+
+    public static final String NAME = "mcts";
+
+    /**
+     * Number of playouts per move when the deadline allows it
+     */
+    public static final int DEFAULT_PLAYOUTS = 256;
+
+    /**
+     * Exploration constant of UCB1
+     */
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    /**
+     * At most 6 neighbours and 12 cells two steps away
+     */
+    private static final int MAX_CANDIDATES = 18;
+
+    private final int playouts;
+    private final Random generator;
+    private final EscapeMap map = new EscapeMap();
+    private final int[] around = new int[Cells.MAX_NEIGHBOURS];
+    private final int[] further = new int[Cells.MAX_NEIGHBOURS];
+    private final int[] open = new int[Cells.MAX_NEIGHBOURS];
+    private final int[] candidates = new int[MAX_CANDIDATES];
+    private final int[] visits = new int[MAX_CANDIDATES];
+    private final int[] wins = new int[MAX_CANDIDATES];
+    private boolean[] blocked;
+    private boolean[] scratch;
+
+    /**
+     * Constructor, with DEFAULT_PLAYOUTS playouts per move
+     *
+     * @param generator the source of randomness of the playouts
+     */
+    public MonteCarloPlayerStrategy(Random generator) {
+        this(generator, DEFAULT_PLAYOUTS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param generator the source of randomness of the playouts
+     * @param playouts the number of playouts per move (at least 1)
+     */
+    public MonteCarloPlayerStrategy(Random generator, int playouts) {
+        if (playouts < 1) {
+            throw new IllegalArgumentException("playouts must be at least 1");
+        }
+        this.generator = generator;
+        this.playouts = playouts;
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public int nextMove(GameModel model, long deadline) {
+        int size = model.getSize();
+        if (blocked == null || blocked.length != size * size) {
+            blocked = new boolean[size * size];
+            scratch = new boolean[size * size];
+        }
+        DotStrategies.fillBlocked(model, blocked);
+        int dot = model.getCurrentDotCell();
+        if (Cells.isOnBorder(dot, size)) {
+            // the blue dot exits whatever the player does
+            return PlayerStrategies.anyAvailable(model, generator);
+        }
+
+        // gather the candidates; an open exit next to the dot must be closed right away
+        int count = 0;
+        Cells.neighbours(dot, size, around);
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            int c = around[k];
+            if (blocked[c]) {
+                continue;
+            }
+            if (Cells.isOnBorder(c, size)) {
+                return c;
+            }
+            count = addCandidate(c, count);
+        }
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            if (Cells.isOnBorder(around[k], size)) {
+                continue;
+            }
+            Cells.neighbours(around[k], size, further);
+            for (int f = 0; f < Cells.MAX_NEIGHBOURS; f++) {
+                if (!blocked[further[f]]) {
+                    count = addCandidate(further[f], count);
+                }
+            }
+        }
+        if (count == 0) {
+            // the blue dot is already circled: any move will do
+            return PlayerStrategies.anyAvailable(model, generator);
+        }
+        if (count == 1) {
+            return candidates[0];
+        }
+
+        for (int i = 0; i < count; i++) {
+            visits[i] = 0;
+            wins[i] = 0;
+        }
+        for (int played = 0; played < playouts; played++) {
+            if (played >= count && System.nanoTime() > deadline) {
+                break;
+            }
+            int pick = select(count, played);
+            visits[pick]++;
+            if (playout(candidates[pick], dot, size)) {
+                wins[pick]++;
+            }
+        }
+
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (visits[i] > visits[best]
+                    || (visits[i] == visits[best] && wins[i] > wins[best])) {
+                best = i;
+            }
+        }
+        return candidates[best];
+    }
+
+    /**
+     * Helper method: adds a cell to the candidates unless it is already there
+     */
+    private int addCandidate(int cell, int count) {
+        for (int i = 0; i < count; i++) {
+            if (candidates[i] == cell) {
+                return count;
+            }
+        }
+        candidates[count] = cell;
+        return count + 1;
+    }
+
+    /**
+     * Helper method: the candidate to play out next, as per UCB1 (each candidate is
+     * played out once first)
+     */
+    private int select(int count, int played) {
+        if (played < count) {
+            return played;
+        }
+        double logPlayed = Math.log(played);
+        int best = 0;
+        double bestScore = -1;
+        for (int i = 0; i < count; i++) {
+            double score = (double) wins[i] / visits[i]
+                    + EXPLORATION * Math.sqrt(logPlayed / visits[i]);
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Helper method: plays a random game once the player has selected a cell
+     *
+     * @param first the cell selected by the player
+     * @param dot the current cell of the blue dot
+     * @param size the size of the board
+     * @return true if the player circled the blue dot
+     */
+    private boolean playout(int first, int dot, int size) {
+        System.arraycopy(blocked, 0, scratch, 0, blocked.length);
+        scratch[first] = true;
+        while (true) {
+            map.compute(scratch, size);
+
+            // the blue dot steps to one of its nearest neighbours to the exit
+            int count = openNeighbours(dot, size);
+            int step = Cells.NONE;
+            int distance = EscapeMap.UNREACHABLE;
+            int ties = 0;
+            for (int k = 0; k < count; k++) {
+                int d = Cells.isOnBorder(open[k], size) ? 0 : map.getDistance(open[k]);
+                if (d < distance) {
+                    step = open[k];
+                    distance = d;
+                    ties = 1;
+                }
+                else if (d == distance && d != EscapeMap.UNREACHABLE
+                        && generator.nextInt(++ties) == 0) {
+                    step = open[k];
+                }
+            }
+            if (step == Cells.NONE) {
+                return true;
+            }
+            scratch[dot] = false;
+            dot = step;
+            scratch[dot] = true;
+            if (Cells.isOnBorder(dot, size)) {
+                // the dot exits whatever the player does next
+                return false;
+            }
+
+            // the player blocks the next step of the dot, or another dot next to it
+            count = openNeighbours(dot, size);
+            if (count == 0) {
+                return true;
+            }
+            int cut = open[generator.nextInt(count)];
+            if (generator.nextBoolean()) {
+                for (int k = 0; k < count; k++) {
+                    int d = Cells.isOnBorder(open[k], size) ? 0 : map.getDistance(open[k]);
+                    if (d < (Cells.isOnBorder(cut, size) ? 0 : map.getDistance(cut))) {
+                        cut = open[k];
+                    }
+                }
+            }
+            scratch[cut] = true;
+        }
+    }
+
+    /**
+     * Helper method: writes the neighbours of a cell that are not blocked in the
+     * playout at the beginning of open, and returns their number
+     */
+    private int openNeighbours(int cell, int size) {
+        Cells.neighbours(cell, size, further);
+        int count = 0;
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            if (!scratch[further[k]]) {
+                open[count++] = further[k];
+            }
+        }
+        return count;
+    }
+}
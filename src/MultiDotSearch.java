@@ -0,0 +1,316 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The class <b>MultiDotSearch</b> moves all the blue dots of a game with several of them
+ * with a single search, rather than one search per dot. A ``breadth-first'' search
+ * starts from every open border cell at once (multi-source) and spreads inwards, giving
+ * each cell its distance to the exit; it stops as soon as it has reached every dot and
+ * settled the layer the dots stand on. Each dot then steps to a neighbour one layer
+ * closer to the exit, ties being broken at random.
+ *
+ * The dots do not block each other's distances (they move), but two dots never share a
+ * cell: they move one after the other, the one closest to the exit first, and a dot whose
+ * best cells are taken steps to a neighbour at the same distance instead, or stays put.
+ * A dot that cannot reach the border stays where it is.
+ *
+ * The cost of a move is that of one search, whatever the number of dots.
+ */
+public class MultiDotSearch {
+
+    private static final int UNKNOWN = -1;
+
+    private final Random generator;
+    private final int[] around = new int[Cells.MAX_NEIGHBOURS];
+
+    /**
+     * Buffers of the search, reused from one move to the next. Only the cells reached by
+     * a search are reset to UNKNOWN after it
+     */
+    private boolean[] blocked;
+    private boolean[] isDot;
+    private int[] distance;
+    private int[] queue;
+    private int[] order;
+
+    /**
+     * State of the current search: the end of the queue, the number of dots not reached
+     * yet and the distance of the farthest dot reached
+     */
+    private int rear;
+    private int unreached;
+    private int farthest;
+
+    /**
+     * Constructor
+     *
+     * @param generator the source of randomness used to break ties
+     */
+    public MultiDotSearch(Random generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * Moves every blue dot one step toward the exit. No dot is on the border
+     *
+     * @param model the game, updated in place
+     * @return the number of dots that can still reach the border; 0 if they are all
+     * encircled (the player won)
+     */
+    public int moveDots(GameModel model) {
+        int size = model.getSize();
+        int dots = model.getDotCount();
+        ensureBuffers(size * size, dots);
+        model.fillBlocked(blocked);
+        int live = 0;
+        for (int k = 0; k < dots; k++) {
+            int dot = model.getDotCell(k);
+            if (dot != Cells.NONE) {
+                blocked[dot] = false;
+                isDot[dot] = true;
+                live++;
+            }
+        }
+        int reached = search(size, live);
+        for (int k = 0; k < dots; k++) {
+            int dot = model.getDotCell(k);
+            if (dot != Cells.NONE) {
+                isDot[dot] = false;
+            }
+        }
+        try {
+            return moveInOrder(model, size, dots);
+        }
+        finally {
+            for (int i = 0; i < reached; i++) {
+                distance[queue[i]] = UNKNOWN;
+            }
+        }
+    }
+
+    /**
+     * Helper method: the multi-source search from the open border cells
+     *
+     * @return the number of cells reached (the end of the queue)
+     */
+    private int search(int size, int dots) {
+        unreached = dots;
+        farthest = 0;
+        rear = 0;
+        // the open border cells are the exits, at distance 0. They are labelled but not
+        // searched from, as Cells.neighbours only handles interior cells
+        for (int i = 0; i < size; i++) {
+            reachExit(Cells.index(i, 0, size));
+            reachExit(Cells.index(i, size - 1, size));
+            if (i > 0 && i < size - 1) {
+                reachExit(Cells.index(0, i, size));
+                reachExit(Cells.index(size - 1, i, size));
+            }
+        }
+        int front = rear;
+        // only the cells of the outermost interior ring can be next to an exit
+        for (int i = 1; i < size - 1; i++) {
+            reachFirstLayer(Cells.index(i, 1, size), size);
+            reachFirstLayer(Cells.index(i, size - 2, size), size);
+            if (i > 1 && i < size - 2) {
+                reachFirstLayer(Cells.index(1, i, size), size);
+                reachFirstLayer(Cells.index(size - 2, i, size), size);
+            }
+        }
+
+        // every border cell is now labelled or blocked, so the search stays inside
+        while (front < rear) {
+            int cell = queue[front++];
+            if (unreached == 0 && distance[cell] >= farthest) {
+                // every dot is reached, and every cell as far as the farthest dot is
+                // labelled already: the dots have all they need to move
+                break;
+            }
+            Cells.neighbours(cell, size, around);
+            for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+                int next = around[k];
+                if (!blocked[next] && distance[next] == UNKNOWN) {
+                    reach(next, distance[cell] + 1);
+                }
+            }
+        }
+        return rear;
+    }
+
+    /**
+     * Helper method: labels a cell with its distance and queues it, counting the dots as
+     * they are reached
+     */
+    private void reach(int cell, int d) {
+        distance[cell] = d;
+        queue[rear++] = cell;
+        if (isDot[cell]) {
+            unreached--;
+            farthest = Math.max(farthest, d);
+        }
+    }
+
+    private void reachExit(int cell) {
+        if (!blocked[cell] && distance[cell] == UNKNOWN) {
+            reach(cell, 0);
+        }
+    }
+
+    private void reachFirstLayer(int cell, int size) {
+        if (blocked[cell] || distance[cell] != UNKNOWN) {
+            return;
+        }
+        Cells.neighbours(cell, size, around);
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            if (distance[around[k]] == 0) {
+                reach(cell, 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper method: moves the dots that can reach the border, closest to the exit first
+     *
+     * @return the number of dots that can reach the border
+     */
+    private int moveInOrder(GameModel model, int size, int dots) {
+        int free = 0;
+        for (int k = 0; k < dots; k++) {
+            int dot = model.getDotCell(k);
+            if (dot != Cells.NONE && distance[dot] != UNKNOWN) {
+                order[free++] = k;
+            }
+        }
+        // insertion sort by distance, the number of dots being small
+        for (int i = 1; i < free; i++) {
+            int k = order[i];
+            int d = distance[model.getDotCell(k)];
+            int j = i - 1;
+            while (j >= 0 && distance[model.getDotCell(order[j])] > d) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = k;
+        }
+
+        for (int i = 0; i < free; i++) {
+            int k = order[i];
+            int dot = model.getDotCell(k);
+            int target = pick(model, dot, size, distance[dot] - 1);
+            if (target == Cells.NONE) {
+                target = pick(model, dot, size, distance[dot]);
+            }
+            if (target != Cells.NONE) {
+                model.moveDot(k, target);
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Helper method: a random AVAILABLE neighbour of a dot at the given distance from the
+     * exit, or Cells.NONE if there is none
+     */
+    private int pick(GameModel model, int dot, int size, int wanted) {
+        Cells.neighbours(dot, size, around);
+        int chosen = Cells.NONE;
+        int seen = 0;
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            int next = around[k];
+            if (distance[next] == wanted && model.getCurrentStatus(Cells.x(next, size),
+                    Cells.y(next, size)) == GameModel.AVAILABLE
+                    && generator.nextInt(++seen) == 0) {
+                chosen = next;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Helper method: (re)allocates the buffers if the board or the number of dots changed
+     */
+    private void ensureBuffers(int cells, int dots) {
+        if (blocked == null || blocked.length != cells) {
+            blocked = new boolean[cells];
+            isDot = new boolean[cells];
+            distance = new int[cells];
+            Arrays.fill(distance, UNKNOWN);
+            queue = new int[cells];
+        }
+        if (order == null || order.length < dots) {
+            order = new int[dots];
+        }
+    }
+
+    /**
+     * Times the moves of the dots on a large board: one shared search for all the dots,
+     * against one BfsDotStrategy search per dot
+     *
+     * @param args the size of the board (301 by default) and the numbers of dots
+     *            (1, 10 and 20 by default)
+     */
+    public static void main(String[] args) {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 301;
+        int[] counts = {1, 10, 20};
+        if (args.length > 1) {
+            counts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                counts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        int moves = 20;
+        System.out.println(String.format("%6s %16s %16s", "dots", "shared (us/move)",
+                "per dot (us/move)"));
+        for (int dots : counts) {
+            long shared = 0;
+            long perDot = 0;
+            for (int round = 0; round < 2; round++) {
+                // the first round warms up the JIT
+                GameModel model = new GameModel(size, dots, new Random(dots));
+                MultiDotSearch search = new MultiDotSearch(new Random(1));
+                BfsDotStrategy single = new BfsDotStrategy(new Random(1));
+                shared = 0;
+                perDot = 0;
+                for (int move = 0; move < moves; move++) {
+                    boolean escaped = false;
+                    for (int k = 0; k < dots; k++) {
+                        int dot = model.getDotCell(k);
+                        escaped |= dot != Cells.NONE && Cells.isOnBorder(dot, size);
+                    }
+                    if (escaped) {
+                        break;
+                    }
+                    GameModel[] views = new GameModel[dots];
+                    for (int k = 0; k < dots; k++) {
+                        views[k] = viewOf(model, k);
+                    }
+                    long start = System.nanoTime();
+                    for (int k = 0; k < dots; k++) {
+                        // what a search per dot costs: BfsDotStrategy from each dot
+                        single.nextMove(views[k], Long.MAX_VALUE);
+                    }
+                    perDot += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    if (search.moveDots(model) == 0) {
+                        break;
+                    }
+                    shared += System.nanoTime() - start;
+                }
+            }
+            System.out.println(String.format("%6d %16d %16d", dots, shared / 1000 / moves,
+                    perDot / 1000 / moves));
+        }
+    }
+
+    /**
+     * Helper method: a copy of a model whose current blue dot is dot k, the other dots
+     * being obstacles, for the benchmark
+     */
+    private static GameModel viewOf(GameModel model, int k) {
+        int size = model.getSize();
+        int dot = model.getDotCell(k);
+        return new GameModel(size, model.getModel(), Cells.x(dot, size), Cells.y(dot, size),
+                model.getNumberOfSteps());
+    }
+}
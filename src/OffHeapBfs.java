@@ -0,0 +1,179 @@
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Random;
+
+/**
+ * The class <b>OffHeapBfs</b> is the ``breadth-first'' search of <b>BfsDotStrategy</b>
+ * working directly on an <b>OffHeapBoard</b>. Its buffers are off the heap as well: the
+ * visited cells are a bitset in a direct buffer (1 bit per cell), and the queue is a ring
+ * of (first step, cell) pairs in a direct buffer that grows with the largest frontier met,
+ * which is usually much smaller than the board. After a search, only the part of the
+ * bitset it touched is cleared.
+ *
+ * An instance must only be used by one thread at a time.
+ */
+public class OffHeapBfs {
+
+    private static final int INITIAL_QUEUE = 1 << 16;
+
+    private final Random generator;
+    private final int[] candidates = new int[Cells.MAX_NEIGHBOURS];
+    private final int[] neighbours = new int[Cells.MAX_NEIGHBOURS];
+
+    /**
+     * The visited cells, and the range of bytes of the bitset set by the last search
+     */
+    private ByteBuffer visited;
+    private int touchedFrom;
+    private int touchedTo;
+
+    /**
+     * The queue: entries head (included) to tail (excluded), modulo its capacity
+     */
+    private LongBuffer queue = ByteBuffer.allocateDirect(INITIAL_QUEUE * 8).asLongBuffer();
+    private int head;
+    private int tail;
+    private int length;
+
+    /**
+     * Constructor
+     *
+     * @param generator the source of randomness used to break ties
+     */
+    public OffHeapBfs(Random generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * Finds the next step of the blue dot on one of the shortest paths to the border
+     *
+     * @param board the board, the blue dot not being on the border
+     * @return the cell the dot moves to, or Cells.NONE if it cannot exit or has left the
+     *         board already
+     */
+    public int nextMove(OffHeapBoard board) {
+        if (board.getCurrentDotCell() == Cells.NONE) {
+            return Cells.NONE;
+        }
+        int size = board.getSize();
+        int bitsetBytes = (int) (((long) size * size + 7) / 8);
+        if (visited == null || visited.capacity() != bitsetBytes) {
+            visited = ByteBuffer.allocateDirect(bitsetBytes);
+        }
+        touchedFrom = Integer.MAX_VALUE;
+        touchedTo = -1;
+        head = 0;
+        tail = 0;
+        length = 0;
+        try {
+            return search(board, size);
+        }
+        finally {
+            clearVisited();
+        }
+    }
+
+    private int search(OffHeapBoard board, int size) {
+        int dot = board.getCurrentDotCell();
+        visit(dot);
+        int count = possibleNeighbours(board, dot, size);
+
+        // adding some non determinism into the game !
+        for (int i = count - 1; i > 0; i--) {
+            int k = generator.nextInt(i + 1);
+            int swap = neighbours[i];
+            neighbours[i] = neighbours[k];
+            neighbours[k] = swap;
+        }
+        for (int i = 0; i < count; i++) {
+            int p = neighbours[i];
+            if (Cells.isOnBorder(p, size)) {
+                return p;
+            }
+            visit(p);
+            push(p, p);
+        }
+
+        while (length > 0) {
+            long entry = queue.get(head);
+            head = (head + 1) & (queue.capacity() - 1);
+            length--;
+            int cell = (int) entry;
+            int first = (int) (entry >>> 32);
+            count = possibleNeighbours(board, cell, size);
+            for (int i = 0; i < count; i++) {
+                int p = neighbours[i];
+                if (Cells.isOnBorder(p, size)) {
+                    return first;
+                }
+                visit(p);
+                push(p, first);
+            }
+        }
+        return Cells.NONE;
+    }
+
+    /**
+     * Helper method: writes the AVAILABLE, unvisited neighbours of a cell at the
+     * beginning of neighbours, and returns their number
+     */
+    private int possibleNeighbours(OffHeapBoard board, int cell, int size) {
+        Cells.neighbours(cell, size, candidates);
+        int count = 0;
+        for (int i = 0; i < Cells.MAX_NEIGHBOURS; i++) {
+            int c = candidates[i];
+            if (!isVisited(c) && board.getStatus(c) == GameModel.AVAILABLE) {
+                neighbours[count++] = c;
+            }
+        }
+        return count;
+    }
+
+    private boolean isVisited(int cell) {
+        return (visited.get(cell >>> 3) & (1 << (cell & 7))) != 0;
+    }
+
+    private void visit(int cell) {
+        int index = cell >>> 3;
+        visited.put(index, (byte) (visited.get(index) | (1 << (cell & 7))));
+        touchedFrom = Math.min(touchedFrom, index);
+        touchedTo = Math.max(touchedTo, index);
+    }
+
+    /**
+     * Helper method: zeroes the bytes of the bitset set by the last search
+     */
+    private void clearVisited() {
+        int index = touchedFrom;
+        while (index <= touchedTo && (index & 7) != 0) {
+            visited.put(index++, (byte) 0);
+        }
+        while (index + 8 <= touchedTo + 1) {
+            visited.putLong(index, 0L);
+            index += 8;
+        }
+        while (index <= touchedTo) {
+            visited.put(index++, (byte) 0);
+        }
+    }
+
+    /**
+     * Helper method: adds a cell to the queue, doubling the ring if it is full
+     */
+    private void push(int cell, int first) {
+        int capacity = queue.capacity();
+        if (length == capacity) {
+            LongBuffer larger = ByteBuffer.allocateDirect(capacity * 2 * 8).asLongBuffer();
+            for (int i = 0; i < length; i++) {
+                larger.put(i, queue.get((head + i) & (capacity - 1)));
+            }
+            queue = larger;
+            head = 0;
+            tail = length;
+            capacity *= 2;
+        }
+        queue.put(tail, ((long) first << 32) | cell);
+        tail = (tail + 1) & (capacity - 1);
+        length++;
+    }
+}
@@ -0,0 +1,343 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * The class <b>OffHeapBoard</b> stores a game on a very large board outside of the Java
+ * heap, at 2 bits per cell: a 20,000 by 20,000 board takes 100 MB instead of 400 million
+ * ints spread over 20,000 arrays. The cells live in a direct ByteBuffer, or in a file mapped
+ * in memory so that the board persists from one run to the next; either way, the heap
+ * footprint does not depend on the size of the board. <b>OffHeapBfs</b> finds the moves of
+ * the blue dot directly on this storage.
+ *
+ * It behaves like <b>GameModel</b> (getCurrentStatus, select, setCurrentDot, and the same
+ * initial position), without the undo history, snapshots and hash of the position.
+ *
+ * Layout of the buffer (and file), all ints big-endian:
+ * - int MAGIC, int VERSION, int size, int cell of the blue dot, int number of steps
+ * - padding up to HEADER_BYTES
+ * - the cells, 4 per byte, cell k (see Cells) in bits 2*(k%4) and 2*(k%4)+1 of byte k/4
+ *
+ * Cells are int indices, so the size of the board is at most MAX_SIZE.
+ */
+public class OffHeapBoard implements BoardState {
+
+    /**
+     * Largest board whose cells can all be indexed by an int
+     */
+    public static final int MAX_SIZE = 46340;
+
+    private static final int MAGIC = 0x43544f48; // "CTOH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    private static final int SIZE_OFFSET = 8;
+    private static final int DOT_OFFSET = 12;
+    private static final int STEPS_OFFSET = 16;
+
+    /**
+     * The probability that an available cell will be initially selected (as in GameModel)
+     */
+    private static final int INITIAL_PROBA = 10;
+
+    private final int size;
+    private final ByteBuffer cells;
+
+    /**
+     * Constructor
+     *
+     * @param size the size of the board
+     * @param cells the buffer holding the header and the cells
+     */
+    private OffHeapBoard(int size, ByteBuffer cells) {
+        this.size = size;
+        this.cells = cells;
+    }
+
+    /**
+     * Creates a new board in a direct buffer, with the initial position of a GameModel
+     *
+     * @param size the size of the board, between 4 and MAX_SIZE
+     * @param generator the source of randomness of the initial position
+     * @return the new board
+     */
+    public static OffHeapBoard allocate(int size, Random generator) {
+        OffHeapBoard board = new OffHeapBoard(size,
+                ByteBuffer.allocateDirect((int) bytesFor(checkSize(size))));
+        board.reset(generator);
+        return board;
+    }
+
+    /**
+     * Creates a new board in a file mapped in memory, with the initial position of a
+     * GameModel. Any previous content of the file is lost.
+     *
+     * @param file the file holding the board
+     * @param size the size of the board, between 4 and MAX_SIZE
+     * @param generator the source of randomness of the initial position
+     * @return the new board
+     * @throws IOException if the file cannot be created
+     */
+    public static OffHeapBoard create(File file, int size, Random generator) throws IOException {
+        long bytes = bytesFor(checkSize(size));
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        try {
+            data.setLength(bytes);
+            OffHeapBoard board = new OffHeapBoard(size,
+                    data.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes));
+            board.reset(generator);
+            return board;
+        }
+        finally {
+            // the mapping stays valid once the file is closed
+            data.close();
+        }
+    }
+
+    /**
+     * Maps a board previously created in a file
+     *
+     * @param file the file holding the board
+     * @return the board, as it was left
+     * @throws IOException if the file cannot be read or does not hold a board
+     */
+    public static OffHeapBoard open(File file) throws IOException {
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        try {
+            MappedByteBuffer cells = data.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    data.length());
+            if (data.length() < HEADER_BYTES || cells.getInt(0) != MAGIC
+                    || cells.getInt(4) != VERSION) {
+                throw new IOException(file + " does not hold a board");
+            }
+            int size = cells.getInt(SIZE_OFFSET);
+            if (size < 4 || size > MAX_SIZE || data.length() != bytesFor(size)) {
+                throw new IOException(file + " does not hold a board");
+            }
+            OffHeapBoard board = new OffHeapBoard(size, cells);
+            int dot = board.getCurrentDotCell();
+            if (dot != Cells.NONE && (dot < 0 || dot >= size * size
+                    || board.getStatus(dot) != GameModel.DOT)) {
+                // a board whose blue dot left before Cells.NONE was recorded for it
+                cells.putInt(DOT_OFFSET, Cells.NONE);
+            }
+            return board;
+        }
+        finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Writes the changes of a board mapped from a file to the disk. Does nothing for a
+     * board in a direct buffer.
+     */
+    public void force() {
+        if (cells instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) cells).force();
+        }
+    }
+
+    /**
+     * Resets the board as GameModel.reset() does: the blue dot on one of the centre
+     * cells, and each other cell SELECTED with a probability 1/INITIAL_PROBA
+     *
+     * @param generator the source of randomness
+     */
+    public void reset(Random generator) {
+        cells.putInt(0, MAGIC);
+        cells.putInt(4, VERSION);
+        cells.putInt(SIZE_OFFSET, size);
+
+        int dotX, dotY;
+        if (size % 2 == 0) {
+            dotX = size / 2 - generator.nextInt(2);
+            dotY = size / 2 - generator.nextInt(2);
+        }
+        else {
+            dotX = size / 2 + 1 - generator.nextInt(3);
+            dotY = size / 2 + 1 - generator.nextInt(3);
+        }
+
+        // fill the cells a block at a time, 4 cells per byte
+        long total = (long) size * size;
+        byte[] block = new byte[64 * 1024];
+        ByteBuffer out = cells.duplicate();
+        out.position(HEADER_BYTES);
+        long cell = 0;
+        while (cell < total) {
+            int length = (int) Math.min(block.length, (total - cell + 3) / 4);
+            for (int b = 0; b < length; b++) {
+                int packed = 0;
+                for (int k = 0; k < 4 && cell < total; k++, cell++) {
+                    if (generator.nextInt(INITIAL_PROBA) == 0) {
+                        packed |= GameModel.SELECTED << (2 * k);
+                    }
+                }
+                block[b] = (byte) packed;
+            }
+            out.put(block, 0, length);
+        }
+
+        int dot = Cells.index(dotX, dotY, size);
+        setStatus(dot, GameModel.DOT);
+        cells.putInt(DOT_OFFSET, dot);
+        cells.putInt(STEPS_OFFSET, 0);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCurrentStatus(int i, int j) {
+        return getStatus(Cells.index(i, j, size));
+    }
+
+    public int getCurrentDotCell() {
+        return cells.getInt(DOT_OFFSET);
+    }
+
+    public int getNumberOfSteps() {
+        return cells.getInt(STEPS_OFFSET);
+    }
+
+    public int getDotCount() {
+        return 1;
+    }
+
+    public int getDotCell(int k) {
+        return getCurrentDotCell();
+    }
+
+    /**
+     * Sets the status of the dot at coordinate (i,j) to SELECTED, and increases the
+     * number of steps by one
+     *
+     * @param i the x coordinate of the dot
+     * @param j the y coordinate of the dot
+     */
+    public void select(int i, int j) {
+        setStatus(Cells.index(i, j, size), GameModel.SELECTED);
+        cells.putInt(STEPS_OFFSET, getNumberOfSteps() + 1);
+    }
+
+    /**
+     * Puts the blue dot at coordinate (i,j) and clears its previous location. If i is
+     * -1, the blue dot exits the board
+     *
+     * @param i the new x coordinate of the blue dot
+     * @param j the new y coordinate of the blue dot
+     */
+    public void setCurrentDot(int i, int j) {
+        int previous = getCurrentDotCell();
+        if (previous != Cells.NONE) {
+            setStatus(previous, GameModel.AVAILABLE);
+        }
+        int dot = (i == -1) ? Cells.NONE : Cells.index(i, j, size);
+        if (dot != Cells.NONE) {
+            setStatus(dot, GameModel.DOT);
+        }
+        cells.putInt(DOT_OFFSET, dot);
+    }
+
+    /**
+     * Getter for the state of a cell
+     *
+     * @param cell the cell (see Cells)
+     * @return AVAILABLE, SELECTED or DOT
+     * @throws IllegalArgumentException if the cell is not on the board (Cells.NONE for
+     *             instance)
+     */
+    public int getStatus(int cell) {
+        if (cell < 0 || cell >= size * size) {
+            throw new IllegalArgumentException("Cell " + cell + " is not on the board");
+        }
+        int shift = (cell & 3) << 1;
+        return (cells.get(HEADER_BYTES + (cell >>> 2)) >>> shift) & 3;
+    }
+
+    private void setStatus(int cell, int state) {
+        int index = HEADER_BYTES + (cell >>> 2);
+        int shift = (cell & 3) << 1;
+        cells.put(index, (byte) ((cells.get(index) & ~(3 << shift)) | (state << shift)));
+    }
+
+    private static int checkSize(int size) {
+        if (size < 4 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("The size must be between 4 and " + MAX_SIZE);
+        }
+        return size;
+    }
+
+    private static long bytesFor(int size) {
+        return HEADER_BYTES + ((long) size * size + 3) / 4;
+    }
+
+    /**
+     * Creates (or reopens) a board and plays a few moves on it, showing the time taken by
+     * the searches of the blue dot and the heap used
+     *
+     * @param args the size of the board, and optionally the file holding it
+     * @throws IOException if the file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java OffHeapBoard size [file]");
+            return;
+        }
+        int size = Integer.parseInt(args[0]);
+        Random generator = new Random();
+        long start = System.currentTimeMillis();
+        OffHeapBoard board;
+        if (args.length < 2) {
+            board = allocate(size, generator);
+        }
+        else {
+            File file = new File(args[1]);
+            board = (file.exists()) ? open(file) : create(file, size, generator);
+        }
+        size = board.getSize();
+        System.out.println("Board of " + size + "x" + size + " ready in "
+                + (System.currentTimeMillis() - start) + " ms, " + board.getNumberOfSteps()
+                + " steps played");
+
+        OffHeapBfs search = new OffHeapBfs(generator);
+        int[] around = new int[Cells.MAX_NEIGHBOURS];
+        for (int move = 0; move < 5; move++) {
+            int dot = board.getCurrentDotCell();
+            if (dot == Cells.NONE || Cells.isOnBorder(dot, size)) {
+                System.out.println("The game is over");
+                break;
+            }
+            // the player selects the first available neighbour of the dot
+            Cells.neighbours(dot, size, around);
+            int selected = Cells.NONE;
+            for (int k = 0; k < Cells.MAX_NEIGHBOURS && selected == Cells.NONE; k++) {
+                if (board.getStatus(around[k]) == GameModel.AVAILABLE) {
+                    selected = around[k];
+                }
+            }
+            if (selected == Cells.NONE) {
+                System.out.println("The blue dot is circled");
+                break;
+            }
+            board.select(Cells.x(selected, size), Cells.y(selected, size));
+            start = System.nanoTime();
+            int next = search.nextMove(board);
+            long micros = (System.nanoTime() - start) / 1000;
+            if (next == Cells.NONE) {
+                System.out.println("The blue dot is circled");
+                break;
+            }
+            board.setCurrentDot(Cells.x(next, size), Cells.y(next, size));
+            System.out.println("Dot moved to " + Cells.x(next, size) + " " + Cells.y(next, size)
+                    + " (search: " + micros + " us)");
+        }
+        board.force();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println("Heap used: " + (runtime.totalMemory() - runtime.freeMemory()) / 1024
+                + " KB");
+    }
+}
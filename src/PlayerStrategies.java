@@ -0,0 +1,73 @@
+import java.util.Random;
+
+/**
+ * The class <b>PlayerStrategies</b> creates the built-in <b>PlayerStrategy</b>
+ * implementations by name, and holds the helpers they share.
+ */
+public final class PlayerStrategies {
+
+    /**
+     * Names of the built-in strategies
+     */
+    public static final String[] NAMES = {
+        RandomPlayerStrategy.NAME, GreedyCutPlayerStrategy.NAME, MonteCarloPlayerStrategy.NAME
+    };
+
+    /**
+     * Number of cells tried at random before anyAvailable falls back to a scan
+     */
+    private static final int RANDOM_TRIES = 32;
+
+    private PlayerStrategies() {
+    }
+
+    /**
+     * Creates a strategy
+     *
+     * @param name one of NAMES
+     * @param generator the source of randomness of the strategy
+     * @return a new strategy
+     * @throws IllegalArgumentException if there is no strategy with that name
+     */
+    public static PlayerStrategy create(String name, Random generator) {
+        if (RandomPlayerStrategy.NAME.equals(name)) {
+            return new RandomPlayerStrategy(generator);
+        }
+        if (GreedyCutPlayerStrategy.NAME.equals(name)) {
+            return new GreedyCutPlayerStrategy(generator);
+        }
+        if (MonteCarloPlayerStrategy.NAME.equals(name)) {
+            return new MonteCarloPlayerStrategy(generator);
+        }
+        throw new IllegalArgumentException("Unknown player strategy: " + name);
+    }
+
+    /**
+     * Picks an AVAILABLE cell at random. A few cells are drawn uniformly; if they are all
+     * taken, the board is scanned from a random cell instead.
+     *
+     * @param model the game
+     * @param generator the source of randomness
+     * @return an AVAILABLE cell, or Cells.NONE if there is none
+     */
+    public static int anyAvailable(GameModel model, Random generator) {
+        int size = model.getSize();
+        int cells = size * size;
+        for (int i = 0; i < RANDOM_TRIES; i++) {
+            int cell = generator.nextInt(cells);
+            if (model.getCurrentStatus(Cells.x(cell, size), Cells.y(cell, size))
+                    == GameModel.AVAILABLE) {
+                return cell;
+            }
+        }
+        int start = generator.nextInt(cells);
+        for (int i = 0; i < cells; i++) {
+            int cell = (start + i) % cells;
+            if (model.getCurrentStatus(Cells.x(cell, size), Cells.y(cell, size))
+                    == GameModel.AVAILABLE) {
+                return cell;
+            }
+        }
+        return Cells.NONE;
+    }
+}
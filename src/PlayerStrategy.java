@@ -0,0 +1,25 @@
+/**
+ * A <b>PlayerStrategy</b> plays the part of the player: it chooses which dot to select
+ * next. It is used to pit automated players against the <b>DotStrategy</b> implementations
+ * (see Tournament). As for dot strategies, an instance may keep buffers from one call to
+ * the next and must only be used by one game (and one thread) at a time.
+ */
+public interface PlayerStrategy {
+
+    /**
+     * Chooses the next dot to select. The game is not over.
+     *
+     * @param model the current state of the game, not modified
+     * @param deadline the System.nanoTime() value by which the answer is needed;
+     *            strategies that can trade time for quality stop refining then
+     * @return an AVAILABLE cell (see Cells), or Cells.NONE if there is none
+     */
+    public int nextMove(GameModel model, long deadline);
+
+    /**
+     * Getter for the name used to select the strategy on the command line
+     *
+     * @return the name of the strategy
+     */
+    public String getName();
+}
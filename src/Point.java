@@ -1,4 +1,8 @@
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * The class <b>Point</b> is a simple helper class that stares a 2 dimentional element on a grid
@@ -6,7 +10,14 @@ import java.io.Serializable;
  * @author Guy-Vincent Jourdan, University of Ottawa
  */
 
-public class Point implements Cloneable, Serializable {
+public class Point implements Cloneable, Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Version of the layout written by writeExternal
+     */
+    private static final int EXTERNAL_VERSION = 1;
 
     /**
      * The coordinate of this point.
@@ -14,6 +25,12 @@ public class Point implements Cloneable, Serializable {
     private int x;
     private int y;
 
+    /**
+     * Constructor used by Externalizable only: the point is filled in by readExternal
+     */
+    public Point(){
+    }
+
     /**
      * Constructor 
      * 
@@ -79,4 +96,30 @@ public class Point implements Cloneable, Serializable {
         }
         return null;
     }
+
+    /**
+     * Writes the point: a version byte, then x and y
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(EXTERNAL_VERSION);
+        out.writeInt(x);
+        out.writeInt(y);
+    }
+
+    /**
+     * Reads a point written by writeExternal
+     * @param in the stream to read from
+     * @throws IOException if the stream cannot be read or comes from a newer version
+     */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != EXTERNAL_VERSION) {
+            throw new InvalidObjectException("Unknown point version " + version);
+        }
+        reset(in.readInt(), in.readInt());
+    }
  }
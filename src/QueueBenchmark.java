@@ -0,0 +1,167 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <b>QueueBenchmark</b> times <b>LockFreeQueue</b> and <b>BoundedArrayQueue</b>
+ * against the queues of java.util.concurrent they stand in for: ConcurrentLinkedQueue
+ * (unbounded, lock-free) and ArrayBlockingQueue (bounded, one lock). Producers and
+ * consumers pass a fixed number of elements through each queue, spinning (with a yield)
+ * when it is full or empty, and the throughput is reported in millions of elements per
+ * second.
+ *
+ * Each measure is the best of a few rounds, after a warm-up round. See QueueStress for the
+ * correctness check.
+ */
+public class QueueBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int CAPACITY = 1024;
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args the numbers of producers and consumers (1 and 1, then 4 and 4 by
+     *            default) and the number of elements per producer (1000000)
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int[][] threads = {{1, 1}, {4, 4}};
+        if (args.length >= 2) {
+            threads = new int[][] {{Integer.parseInt(args[0]), Integer.parseInt(args[1])}};
+        }
+        int count = (args.length > 2) ? Integer.parseInt(args[2]) : 1000000;
+        System.out.println(String.format("%-26s %10s %10s %14s", "queue", "producers",
+                "consumers", "M elements/s"));
+        for (int[] pair : threads) {
+            for (int kind = 0; kind < 4; kind++) {
+                double best = 0;
+                String name = null;
+                for (int round = 0; round <= ROUNDS; round++) {
+                    QueueStress.Target queue = create(kind);
+                    name = queue.toString();
+                    double rate = run(queue, pair[0], pair[1], count);
+                    // round 0 warms up the JIT
+                    if (round > 0) {
+                        best = Math.max(best, rate);
+                    }
+                }
+                System.out.println(String.format("%-26s %10d %10d %14.2f", name, pair[0],
+                        pair[1], best));
+            }
+        }
+    }
+
+    private static QueueStress.Target create(int kind) {
+        switch (kind) {
+        case 0:
+            return QueueStress.lockFree();
+        case 1:
+            return concurrentLinked();
+        case 2:
+            return QueueStress.boundedArray(CAPACITY);
+        default:
+            return arrayBlocking();
+        }
+    }
+
+    private static QueueStress.Target concurrentLinked() {
+        final ConcurrentLinkedQueue<Integer> queue = new ConcurrentLinkedQueue<Integer>();
+        return new QueueStress.Target() {
+            public boolean offer(Integer o) {
+                return queue.offer(o);
+            }
+            public Integer poll() {
+                return queue.poll();
+            }
+            public boolean isEmpty() {
+                return queue.isEmpty();
+            }
+            public String toString() {
+                return "ConcurrentLinkedQueue";
+            }
+        };
+    }
+
+    private static QueueStress.Target arrayBlocking() {
+        final ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(CAPACITY);
+        return new QueueStress.Target() {
+            public boolean offer(Integer o) {
+                return queue.offer(o);
+            }
+            public Integer poll() {
+                return queue.poll();
+            }
+            public boolean isEmpty() {
+                return queue.isEmpty();
+            }
+            public String toString() {
+                return "ArrayBlockingQueue(" + CAPACITY + ")";
+            }
+        };
+    }
+
+    /**
+     * Helper method: passes count elements per producer through the queue
+     *
+     * @return the throughput, in millions of elements per second
+     */
+    private static double run(final QueueStress.Target queue, int producers, int consumers,
+            final int count) throws InterruptedException {
+        final long total = (long) producers * count;
+        final AtomicLong taken = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        // the elements are boxed beforehand, so that only the queue is timed
+        final Integer[] elements = new Integer[count];
+        for (int k = 0; k < count; k++) {
+            elements[k] = k;
+        }
+        Thread[] all = new Thread[producers + consumers];
+        for (int p = 0; p < producers; p++) {
+            all[p] = new Thread() {
+                public void run() {
+                    await(start);
+                    for (int k = 0; k < count; k++) {
+                        while (!queue.offer(elements[k])) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+        }
+        for (int c = 0; c < consumers; c++) {
+            all[producers + c] = new Thread() {
+                public void run() {
+                    await(start);
+                    while (taken.get() < total) {
+                        if (queue.poll() == null) {
+                            Thread.yield();
+                        }
+                        else {
+                            taken.incrementAndGet();
+                        }
+                    }
+                }
+            };
+        }
+        for (Thread t : all) {
+            t.start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread t : all) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - started;
+        return total * 1000.0 / elapsed;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <b>QueueStress</b> checks <b>LockFreeQueue</b> and <b>BoundedArrayQueue</b>
+ * under contention: several producers and consumers share a queue for a number of rounds,
+ * and after each round
+ * - every element put in was taken out once (the counts and the sums match),
+ * - the elements of each producer came out in the order it put them in,
+ * - the queue is empty.
+ *
+ * The bounded queue is kept small, so that producers often find it full and consumers
+ * often find it empty. Exits with status 1 on the first failure.
+ */
+public class QueueStress {
+
+    /**
+     * The operations the check needs, over the queue under test
+     */
+    interface Target {
+        boolean offer(Integer o);
+        Integer poll();
+        boolean isEmpty();
+    }
+
+    static Target lockFree() {
+        final LockFreeQueue<Integer> queue = new LockFreeQueue<Integer>();
+        return new Target() {
+            public boolean offer(Integer o) {
+                queue.enqueue(o);
+                return true;
+            }
+            public Integer poll() {
+                return queue.poll();
+            }
+            public boolean isEmpty() {
+                return queue.isEmpty();
+            }
+            public String toString() {
+                return "LockFreeQueue";
+            }
+        };
+    }
+
+    static Target boundedArray(final int capacity) {
+        final BoundedArrayQueue<Integer> queue = new BoundedArrayQueue<Integer>(capacity);
+        return new Target() {
+            public boolean offer(Integer o) {
+                return queue.offer(o);
+            }
+            public Integer poll() {
+                return queue.poll();
+            }
+            public boolean isEmpty() {
+                return queue.isEmpty();
+            }
+            public String toString() {
+                return "BoundedArrayQueue(" + queue.getCapacity() + ")";
+            }
+        };
+    }
+
+    /**
+     * Runs the check
+     *
+     * @param args the numbers of producers and consumers (4 each by default), the number
+     *            of elements per producer (200000) and the number of rounds (5)
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int producers = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int consumers = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        int count = (args.length > 2) ? Integer.parseInt(args[2]) : 200000;
+        int rounds = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+        if (producers < 1 || consumers < 1 || count < 1 || rounds < 1) {
+            System.out.println("Usage: java QueueStress [producers consumers elements rounds]");
+            System.exit(1);
+        }
+        boolean passed = true;
+        for (int round = 1; round <= rounds && passed; round++) {
+            passed = check(lockFree(), producers, consumers, count, round)
+                    && check(boundedArray(16), producers, consumers, count, round);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Helper method: one round on one queue. The element k of producer p is
+     * p * count + k, so a consumer can tell who produced it and in which order
+     *
+     * @return true if the round passed
+     */
+    private static boolean check(final Target queue, final int producers, final int consumers,
+            final int count, int round) throws InterruptedException {
+        final long total = (long) producers * count;
+        final AtomicLong taken = new AtomicLong();
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong disorders = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers + consumers];
+        for (int p = 0; p < producers; p++) {
+            final int first = p * count;
+            threads[p] = new Thread("producer-" + p) {
+                public void run() {
+                    await(start);
+                    for (int k = 0; k < count; k++) {
+                        Integer o = first + k;
+                        while (!queue.offer(o)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads[producers + c] = new Thread("consumer-" + c) {
+                public void run() {
+                    // the last element seen from each producer
+                    int[] last = new int[producers];
+                    Arrays.fill(last, -1);
+                    long mySum = 0;
+                    await(start);
+                    while (taken.get() < total) {
+                        Integer o = queue.poll();
+                        if (o == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        taken.incrementAndGet();
+                        int p = o / count;
+                        int k = o % count;
+                        if (k <= last[p]) {
+                            disorders.incrementAndGet();
+                        }
+                        last[p] = k;
+                        mySum += o;
+                    }
+                    sum.addAndGet(mySum);
+                }
+            };
+        }
+        long started = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        long elapsed = (System.nanoTime() - started) / 1000000;
+
+        // 0 + 1 + ... + (total - 1)
+        long expectedSum = total * (total - 1) / 2;
+        boolean passed = taken.get() == total && sum.get() == expectedSum
+                && disorders.get() == 0 && queue.isEmpty() && queue.poll() == null;
+        System.out.println(String.format("round %d %-24s %s: %d taken (expected %d), sum %d"
+                + " (expected %d), %d out of order, %s at the end, %d ms", round, queue,
+                passed ? "ok" : "FAILED", taken.get(), total, sum.get(), expectedSum,
+                disorders.get(), queue.isEmpty() ? "empty" : "not empty", elapsed));
+        return passed;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+import java.util.Random;
+
+/**
+ * The class <b>RandomPlayerStrategy</b> selects any available dot, uniformly at random.
+ * It is the baseline the other player strategies are measured against.
+ */
+public class RandomPlayerStrategy implements PlayerStrategy {
+
+    public static final String NAME = "random";
+
+    private final Random generator;
+
+    /**
+     * Constructor
+     *
+     * @param generator the source of randomness of the player
+     */
+    public RandomPlayerStrategy(Random generator) {
+        this.generator = generator;
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public int nextMove(GameModel model, long deadline) {
+        return PlayerStrategies.anyAvailable(model, generator);
+    }
+}
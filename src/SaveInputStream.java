@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * The class <b>SaveInputStream</b> reads saved games, including those saved before
+ * <b>GameModel</b> and <b>Point</b> became Externalizable. Java serialization refuses to
+ * read a class written as Serializable into an Externalizable one, so the descriptors of
+ * the older GameModel and Point are swapped for those of stand-in classes laid out like
+ * them, which turn into a GameModel (or a Point) once read (readResolve).
+ *
+ * Two older layouts are known:
+ * - the original one, every field written by default serialization (an int[][] board, a
+ *   Point for the blue dot, the java.util.Random of the game)
+ * - the BoardCodec encoding written by the writeObject hook of GameModel
+ */
+public class SaveInputStream extends ObjectInputStream {
+
+    /**
+     * Constructor
+     *
+     * @param in the stream of the saved game
+     * @throws IOException if the stream header cannot be read
+     */
+    public SaveInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    /**
+     * Reads a saved game
+     *
+     * @return the game
+     * @throws IOException if the stream cannot be read or does not hold a game
+     *             (InvalidObjectException if it is corrupted)
+     */
+    public GameModel readModel() throws IOException {
+        Object read;
+        try {
+            read = readObject();
+        }
+        catch (ClassNotFoundException e) {
+            throw new InvalidObjectException("Not a saved game: " + e.getMessage());
+        }
+        catch (RuntimeException e) {
+            // what ObjectInputStream throws on some corrupted streams (ClassCastException,
+            // NegativeArraySizeException, ...)
+            throw new InvalidObjectException("Corrupted saved game: " + e);
+        }
+        if (!(read instanceof GameModel)) {
+            throw new InvalidObjectException("Not a saved game");
+        }
+        return (GameModel) read;
+    }
+
+    /**
+     * Externalizable classes have no serializable fields, the older ones had some
+     */
+    @Override
+    protected ObjectStreamClass readClassDescriptor()
+            throws IOException, ClassNotFoundException {
+        ObjectStreamClass desc = super.readClassDescriptor();
+        if (desc.getFields().length == 0) {
+            return desc;
+        }
+        if (desc.getName().equals("GameModel")) {
+            ObjectStreamField dot = desc.getField("currentDot");
+            return ObjectStreamClass.lookup((dot != null && !dot.isPrimitive())
+                    ? OriginalModel.class : EncodedModel.class);
+        }
+        if (desc.getName().equals("Point")) {
+            return ObjectStreamClass.lookup(OriginalPoint.class);
+        }
+        return desc;
+    }
+
+    /**
+     * Stand-in for the original GameModel, read field by field
+     */
+    private static class OriginalModel implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private int sizeOfGame;
+        private int[][] model;
+        private Object currentDot;
+        private int numberOfSteps;
+        private Random generator;
+
+        private Object readResolve() throws InvalidObjectException {
+            if (model == null || model.length != sizeOfGame || sizeOfGame < 1
+                    || !(currentDot instanceof Point) || numberOfSteps < 0) {
+                throw new InvalidObjectException("Corrupted game model");
+            }
+            for (int[] column : model) {
+                if (column == null || column.length != sizeOfGame) {
+                    throw new InvalidObjectException("Corrupted game model");
+                }
+                for (int status : column) {
+                    if (status != GameModel.AVAILABLE && status != GameModel.SELECTED
+                            && status != GameModel.DOT) {
+                        throw new InvalidObjectException("Corrupted game model");
+                    }
+                }
+            }
+            Point dot = (Point) currentDot;
+            if (dot.getX() < 0 || dot.getX() >= sizeOfGame || dot.getY() < 0
+                    || dot.getY() >= sizeOfGame) {
+                throw new InvalidObjectException("Corrupted game model");
+            }
+            return new GameModel(sizeOfGame, model, dot.getX(), dot.getY(), numberOfSteps);
+        }
+    }
+
+    /**
+     * Stand-in for the GameModel written as a BoardCodec encoding by its writeObject hook
+     */
+    private static class EncodedModel implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient byte[] data;
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            // never written; declared so that the custom data of the stream is expected
+            throw new InvalidObjectException("Read only");
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException {
+            data = GameModel.readEncoding(in);
+        }
+
+        private Object readResolve() throws InvalidObjectException {
+            try {
+                return BoardCodec.decode(data);
+            }
+            catch (IllegalArgumentException e) {
+                throw new InvalidObjectException("Corrupted game model");
+            }
+        }
+    }
+
+    /**
+     * Stand-in for the original Point, read field by field
+     */
+    private static class OriginalPoint implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private int x;
+        private int y;
+
+        private Object readResolve() {
+            return new Point(x, y);
+        }
+    }
+}
@@ -0,0 +1,677 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <b>SaveSlotStore</b> keeps many saved games in two files: a data file holding
+ * the BoardCodec encoding of each save one after the other, and an index, memory-mapped,
+ * with one fixed-size entry per slot giving the offset and length of its save in the data
+ * file along with its metadata. Listing the slots reads the index only, and loading a
+ * slot reads its save only, so both cost the same whatever the number of slots.
+ *
+ * The data file is only ever appended to: saving over a slot appends the new save, and
+ * deleting a slot only clears its entry. The space left behind is reclaimed by compact(),
+ * run in the background once more than half of the data file is garbage. It copies the
+ * live saves to a new data file and writes a new index next to the old one, then renames
+ * it over the old one, so the store is never left half compacted.
+ *
+ * <pre>
+ * BASE.idx   header: int MAGIC, int VERSION, int generation, int slots (in use or not)
+ *                    then HEADER_BYTES - 16 reserved bytes
+ *            entries of ENTRY_BYTES: long offset, int length, int flags (FLAG_USED),
+ *                    long time saved (ms), int size of the board, int number of steps,
+ *                    long hash of the position, NAME_BYTES of name (UTF-8, 0-padded)
+ * BASE-G.dat the saves of generation G (incremented by each compaction)
+ * </pre>
+ *
+ * All values are big-endian. The methods are synchronized.
+ */
+public class SaveSlotStore {
+
+    public static final int MAGIC = 0x43545353; // "CTSS"
+    public static final int VERSION = 1;
+
+    public static final int HEADER_BYTES = 32;
+    public static final int ENTRY_BYTES = 64;
+    public static final int NAME_BYTES = 24;
+
+    public static final int FLAG_USED = 1;
+
+    /**
+     * Number of entries of a new index; it doubles when full
+     */
+    private static final int INITIAL_SLOTS = 64;
+
+    /**
+     * Garbage below this size is never worth a compaction
+     */
+    private static final long COMPACT_MIN_BYTES = 64 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The metadata of a slot, as listed by the store
+     */
+    public static final class Slot {
+
+        private final int index;
+        private final String name;
+        private final long savedAt;
+        private final int size;
+        private final int steps;
+
+        private Slot(int index, String name, long savedAt, int size, int steps) {
+            this.index = index;
+            this.name = name;
+            this.savedAt = savedAt;
+            this.size = size;
+            this.steps = steps;
+        }
+
+        /**
+         * @return the number of the slot
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the name given to the save
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the time of the save, in milliseconds since the epoch
+         */
+        public long getSavedAt() {
+            return savedAt;
+        }
+
+        /**
+         * @return the size of the board
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return the number of steps played
+         */
+        public int getSteps() {
+            return steps;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s - %dx%d, %d steps, %tF %<tR", name, size, size, steps,
+                    savedAt);
+        }
+    }
+
+    private final File indexFile;
+    private final String base;
+
+    private RandomAccessFile indexAccess;
+    private MappedByteBuffer index;
+    private int capacity;
+
+    private int generation;
+    private RandomAccessFile dataAccess;
+    private FileChannel data;
+
+    /**
+     * Bytes of the data file used by the live saves
+     */
+    private long liveBytes;
+
+    private ExecutorService compactor;
+    private Future<Void> compaction;
+
+    /**
+     * Held for the whole of a compaction, so that two never run at once
+     */
+    private final Object compacting = new Object();
+
+    /**
+     * Opens a store, creating it if it does not exist
+     *
+     * @param base the path of the store, without extension (BASE.idx and BASE-G.dat)
+     * @throws IOException if the files cannot be opened, or are not a store
+     */
+    public SaveSlotStore(File base) throws IOException {
+        this.base = base.getAbsolutePath();
+        indexFile = new File(this.base + ".idx");
+        File parent = indexFile.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        if (!indexFile.exists()) {
+            writeIndex(indexFile, 0, INITIAL_SLOTS, new ByteBuffer[0]);
+        }
+        mapIndex();
+        if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+            close();
+            throw new IOException(indexFile + " is not a save slot index");
+        }
+        generation = index.getInt(8);
+        openData();
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            if (isUsed(slot)) {
+                liveBytes += index.getInt(entry(slot) + 8);
+            }
+        }
+        deleteStaleData();
+    }
+
+    /**
+     * Getter for the number of slots, in use or deleted
+     *
+     * @return the number of slots; slots are numbered from 0
+     */
+    public synchronized int getSlotCount() {
+        return index.getInt(12);
+    }
+
+    /**
+     * Lists the slots in use
+     *
+     * @return the metadata of the slots in use, in slot order
+     */
+    public synchronized List<Slot> list() {
+        List<Slot> slots = new ArrayList<Slot>();
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            if (isUsed(slot)) {
+                slots.add(getSlot(slot));
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Reads the metadata of a slot from the index
+     *
+     * @param slot the slot
+     * @return its metadata, null if it is not in use
+     */
+    public synchronized Slot getSlot(int slot) {
+        if (slot < 0 || slot >= getSlotCount() || !isUsed(slot)) {
+            return null;
+        }
+        int at = entry(slot);
+        byte[] name = new byte[NAME_BYTES];
+        for (int i = 0; i < NAME_BYTES; i++) {
+            name[i] = index.get(at + 40 + i);
+        }
+        int length = 0;
+        while (length < NAME_BYTES && name[length] != 0) {
+            length++;
+        }
+        return new Slot(slot, new String(name, 0, length, UTF8), index.getLong(at + 16),
+                index.getInt(at + 24), index.getInt(at + 28));
+    }
+
+    /**
+     * Saves a game in a new slot
+     *
+     * @param state the position to save, a snapshot of the model
+     * @param name the name of the save, cut to NAME_BYTES bytes
+     * @return the slot of the save
+     * @throws IOException if the save cannot be written
+     */
+    public synchronized int add(BoardSnapshot state, String name) throws IOException {
+        int slot = getSlotCount();
+        save(slot, state, name);
+        return slot;
+    }
+
+    /**
+     * Saves a game in a given slot, replacing what it held
+     *
+     * @param slot the slot, at most getSlotCount()
+     * @param state the position to save, a snapshot of the model
+     * @param name the name of the save, cut to NAME_BYTES bytes
+     * @throws IOException if the save cannot be written
+     */
+    public synchronized void save(int slot, BoardSnapshot state, String name) throws IOException {
+        if (slot < 0 || slot > getSlotCount()) {
+            throw new IllegalArgumentException("No slot " + slot);
+        }
+        byte[] encoded = BoardCodec.encode(state);
+        long offset = data.size();
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        while (buffer.hasRemaining()) {
+            data.write(buffer, offset + buffer.position());
+        }
+        data.force(false);
+
+        if (slot == getSlotCount()) {
+            if (slot == capacity) {
+                grow();
+            }
+            index.putInt(12, slot + 1);
+        }
+        else if (isUsed(slot)) {
+            liveBytes -= index.getInt(entry(slot) + 8);
+        }
+        int at = entry(slot);
+        index.putLong(at, offset);
+        index.putInt(at + 8, encoded.length);
+        index.putLong(at + 16, System.currentTimeMillis());
+        index.putInt(at + 24, state.getSize());
+        index.putInt(at + 28, state.getNumberOfSteps());
+        index.putLong(at + 32, state.getHash());
+        byte[] bytes = nameBytes(name);
+        for (int i = 0; i < NAME_BYTES; i++) {
+            index.put(at + 40 + i, (i < bytes.length) ? bytes[i] : 0);
+        }
+        index.putInt(at + 12, FLAG_USED);
+        liveBytes += encoded.length;
+        compactIfWorthIt();
+    }
+
+    /**
+     * Loads the game saved in a slot, reading that save only
+     *
+     * @param slot the slot
+     * @return a new model
+     * @throws IOException if the save cannot be read or is corrupted
+     * @throws IllegalArgumentException if the slot is not in use
+     */
+    public synchronized GameModel load(int slot) throws IOException {
+        if (slot < 0 || slot >= getSlotCount() || !isUsed(slot)) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        int at = entry(slot);
+        long offset = index.getLong(at);
+        ByteBuffer buffer = ByteBuffer.allocate(index.getInt(at + 8));
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Save of slot " + slot + " is truncated");
+            }
+        }
+        GameModel model;
+        try {
+            model = BoardCodec.decode(buffer.array());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("Save of slot " + slot + " is corrupted");
+        }
+        if (model.getHash() != index.getLong(at + 32)) {
+            throw new IOException("Save of slot " + slot + " is corrupted");
+        }
+        return model;
+    }
+
+    /**
+     * Deletes the save of a slot. The slot stays numbered, empty
+     *
+     * @param slot the slot
+     */
+    public synchronized void delete(int slot) {
+        if (slot < 0 || slot >= getSlotCount() || !isUsed(slot)) {
+            return;
+        }
+        int at = entry(slot);
+        index.putInt(at + 12, 0);
+        liveBytes -= index.getInt(at + 8);
+        compactIfWorthIt();
+    }
+
+    /**
+     * Getter for the bytes of the data file no live save uses
+     *
+     * @return the size of the garbage
+     * @throws IOException if the size of the data file cannot be read
+     */
+    public synchronized long getGarbageBytes() throws IOException {
+        return data.size() - liveBytes;
+    }
+
+    /**
+     * Compacts the store on a background thread, unless a compaction is under way already
+     *
+     * @return the compaction
+     */
+    public synchronized Future<Void> compactInBackground() {
+        if (compaction == null || compaction.isDone()) {
+            if (compactor == null) {
+                compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "save-slot-compactor");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+            compaction = compactor.submit(new Callable<Void>() {
+                public Void call() throws IOException {
+                    compact();
+                    return null;
+                }
+            });
+        }
+        return compaction;
+    }
+
+    /**
+     * Copies the live saves to a new data file, leaving the garbage behind. Saves made
+     * while the copy runs are copied at the end, so the store stays usable meanwhile
+     *
+     * @throws IOException if the new files cannot be written; the store is then unchanged
+     */
+    public void compact() throws IOException {
+        synchronized (compacting) {
+            compactOnce();
+        }
+    }
+
+    private void compactOnce() throws IOException {
+        // copy the saves as of now, without holding the lock: the data file is append-only
+        int nextGeneration;
+        FileChannel source;
+        long[] offsets;
+        int[] lengths;
+        synchronized (this) {
+            nextGeneration = generation + 1;
+            source = data;
+            offsets = new long[getSlotCount()];
+            lengths = new int[offsets.length];
+            for (int slot = 0; slot < offsets.length; slot++) {
+                int at = entry(slot);
+                offsets[slot] = index.getLong(at);
+                lengths[slot] = isUsed(slot) ? index.getInt(at + 8) : 0;
+            }
+        }
+        File targetFile = dataFile(nextGeneration);
+        RandomAccessFile targetAccess = new RandomAccessFile(targetFile, "rw");
+        boolean switched = false;
+        try {
+            FileChannel target = targetAccess.getChannel();
+            target.truncate(0);
+            long[] moved = new long[offsets.length];
+            for (int slot = 0; slot < offsets.length; slot++) {
+                if (lengths[slot] > 0) {
+                    moved[slot] = copy(source, offsets[slot], lengths[slot], target);
+                }
+            }
+
+            synchronized (this) {
+                // saves made in the meantime
+                ByteBuffer[] entries = new ByteBuffer[getSlotCount()];
+                for (int slot = 0; slot < entries.length; slot++) {
+                    int at = entry(slot);
+                    ByteBuffer copy = ByteBuffer.allocate(ENTRY_BYTES);
+                    for (int i = 0; i < ENTRY_BYTES; i++) {
+                        copy.put(i, index.get(at + i));
+                    }
+                    entries[slot] = copy;
+                    if (!isUsed(slot)) {
+                        continue;
+                    }
+                    long offset = index.getLong(at);
+                    int length = index.getInt(at + 8);
+                    if (slot >= offsets.length || offset != offsets[slot]
+                            || length != lengths[slot]) {
+                        copy.putLong(0, copy(data, offset, length, target));
+                    }
+                    else {
+                        copy.putLong(0, moved[slot]);
+                    }
+                }
+                target.force(true);
+
+                File newIndex = new File(base + ".idx.tmp");
+                writeIndex(newIndex, nextGeneration, Math.max(capacity, entries.length),
+                        entries);
+                Files.move(newIndex.toPath(), indexFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                // from here on, the new files are the store
+                switched = true;
+                File old = dataFile(generation);
+                indexAccess.close();
+                dataAccess.close();
+                generation = nextGeneration;
+                dataAccess = targetAccess;
+                data = target;
+                mapIndex();
+                old.delete();
+            }
+        }
+        finally {
+            if (!switched) {
+                targetAccess.close();
+                targetFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Closes the store, after the compaction under way if there is one
+     *
+     * @throws IOException if the files cannot be closed
+     */
+    public void close() throws IOException {
+        ExecutorService stopping;
+        synchronized (this) {
+            stopping = compactor;
+            compactor = null;
+        }
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                stopping.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (index != null) {
+                index.force();
+            }
+            if (indexAccess != null) {
+                indexAccess.close();
+            }
+            if (dataAccess != null) {
+                dataAccess.close();
+            }
+        }
+    }
+
+    /**
+     * Helper method: starts a compaction if more than half of the data file is garbage
+     */
+    private void compactIfWorthIt() {
+        try {
+            long garbage = getGarbageBytes();
+            if (garbage > COMPACT_MIN_BYTES && garbage > liveBytes) {
+                compactInBackground();
+            }
+        }
+        catch (IOException e) {
+            // the next change will try again
+        }
+    }
+
+    private boolean isUsed(int slot) {
+        return (index.getInt(entry(slot) + 12) & FLAG_USED) != 0;
+    }
+
+    private static int entry(int slot) {
+        return HEADER_BYTES + slot * ENTRY_BYTES;
+    }
+
+    private File dataFile(int gen) {
+        return new File(base + "-" + gen + ".dat");
+    }
+
+    /**
+     * Helper method: the name as at most NAME_BYTES bytes of UTF-8, not cutting a character
+     */
+    private static byte[] nameBytes(String name) {
+        byte[] bytes = (name == null) ? new byte[0] : name.getBytes(UTF8);
+        if (bytes.length <= NAME_BYTES) {
+            return bytes;
+        }
+        int length = NAME_BYTES;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        byte[] cut = new byte[length];
+        System.arraycopy(bytes, 0, cut, 0, length);
+        return cut;
+    }
+
+    /**
+     * Helper method: maps the index file
+     */
+    private void mapIndex() throws IOException {
+        indexAccess = new RandomAccessFile(indexFile, "rw");
+        FileChannel channel = indexAccess.getChannel();
+        if (channel.size() < HEADER_BYTES) {
+            throw new IOException(indexFile + " is not a save slot index");
+        }
+        capacity = (int) ((channel.size() - HEADER_BYTES) / ENTRY_BYTES);
+        index = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    }
+
+    /**
+     * Helper method: doubles the number of entries of the index, and maps it again
+     */
+    private void grow() throws IOException {
+        index.force();
+        indexAccess.setLength(HEADER_BYTES + (long) capacity * 2 * ENTRY_BYTES);
+        indexAccess.close();
+        mapIndex();
+    }
+
+    private void openData() throws IOException {
+        dataAccess = new RandomAccessFile(dataFile(generation), "rw");
+        data = dataAccess.getChannel();
+    }
+
+    /**
+     * Helper method: deletes the data files of other generations, left behind by a
+     * compaction that did not complete
+     */
+    private void deleteStaleData() {
+        File directory = indexFile.getParentFile();
+        String prefix = new File(base).getName() + "-";
+        File[] files = (directory == null) ? null : directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        String current = dataFile(generation).getName();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.endsWith(".dat") && !name.equals(current)
+                    && name.substring(prefix.length(), name.length() - 4).matches("\\d+")) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Helper method: writes a complete index file
+     *
+     * @param file the file to write
+     * @param gen the generation of the data file
+     * @param slots the number of entries of the file
+     * @param entries the entries of the slots in use or deleted
+     */
+    private static void writeIndex(File file, int gen, int slots, ByteBuffer[] entries)
+            throws IOException {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = access.getChannel();
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(gen).putInt(entries.length);
+            header.clear();
+            channel.write(header, 0);
+            for (int slot = 0; slot < entries.length; slot++) {
+                ByteBuffer entry = entries[slot];
+                entry.clear();
+                channel.write(entry, entry(slot));
+            }
+            access.setLength(HEADER_BYTES + (long) slots * ENTRY_BYTES);
+            channel.force(true);
+        }
+        finally {
+            access.close();
+        }
+    }
+
+    /**
+     * Helper method: appends a save of one data file to another
+     *
+     * @return the offset of the copy
+     */
+    private static long copy(FileChannel from, long offset, int length, FileChannel to)
+            throws IOException {
+        long at = to.size();
+        long done = 0;
+        while (done < length) {
+            done += from.transferTo(offset + done, length - done, to.position(at + done));
+        }
+        return at;
+    }
+
+    /**
+     * Times listing and loading with many slots
+     *
+     * @param args the path of a scratch store, the number of slots (5000 by default) and
+     *            the size of the boards (31 by default)
+     * @throws IOException if the store cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java SaveSlotStore base [slots] [size]");
+            return;
+        }
+        int slots = (args.length > 1) ? Integer.parseInt(args[1]) : 5000;
+        int size = (args.length > 2) ? Integer.parseInt(args[2]) : 31;
+        SaveSlotStore store = new SaveSlotStore(new File(args[0]));
+        GameModel model = new GameModel(size, new java.util.Random(1));
+        int first = store.getSlotCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < slots; i++) {
+            store.add(model.getSnapshot(), "game " + i);
+        }
+        long saved = System.nanoTime();
+        int listed = store.list().size();
+        long list = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            store.load(first + (int) ((i * 7919L) % slots));
+        }
+        long load = System.nanoTime();
+        for (int i = first; i < first + slots; i += 2) {
+            store.delete(i);
+        }
+        long garbage = store.getGarbageBytes();
+        store.compact();
+        long compact = System.nanoTime();
+        System.out.println(String.format("%d slots: save %d us/slot, list %d slots in %d ms,"
+                + " load %d us/slot, compact %d KB of garbage in %d ms", store.getSlotCount(),
+                (saved - start) / 1000 / slots, listed, (list - saved) / 1000000,
+                (load - list) / 1000 / 1000, garbage / 1024, (compact - load) / 1000000));
+        store.close();
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.Random;
+
+/**
+ * The class <b>ScanBenchmark</b> times the loops that walk the whole board, comparing
+ * the former cell-by-cell versions with the current ones:
+ * - building the blocked cells of the dot strategies (DotStrategies.fillBlocked), by
+ *   scanning the board or by copying the blocked cells the model keeps up to date,
+ * - finding the dots BoardView.update must change after a move, by sweeping every dot
+ *   of the snapshot or by skipping the rows it shares with the previous one.
+ *
+ * Each measure is the best average of a few rounds, after a warm-up round.
+ */
+public class ScanBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * Sink for the results, so that the JIT cannot drop the loops
+     */
+    private static long sink;
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args the sizes of the boards (501, 1001 and 2001 by default)
+     */
+    public static void main(String[] args) {
+        int[] sizes = {501, 1001, 2001};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println(String.format("%6s %14s %14s %8s %14s %14s %8s", "size",
+                "scan (us)", "copy (us)", "speedup", "sweep (us)", "diff (us)",
+                "speedup"));
+        for (int size : sizes) {
+            final GameModel model = new GameModel(size, new Random(size));
+            final boolean[] blocked = new boolean[size * size];
+            int iterations = Math.max(3, 50000000 / (size * size));
+
+            double cellByCell = best(iterations, new Runnable() {
+                public void run() {
+                    // the former DotStrategies.fillBlocked
+                    int n = model.getSize();
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < n; j++) {
+                            blocked[i * n + j] =
+                                    model.getCurrentStatus(i, j) != GameModel.AVAILABLE;
+                        }
+                    }
+                    sink += blocked[n + 1] ? 1 : 0;
+                }
+            });
+            double byRows = best(iterations, new Runnable() {
+                public void run() {
+                    DotStrategies.fillBlocked(model, blocked);
+                    sink += blocked[model.getSize() + 1] ? 1 : 0;
+                }
+            });
+
+            // one move apart: the snapshots share all of their rows but two
+            final BoardSnapshot before = model.getSnapshot();
+            int[] around = new int[Cells.MAX_NEIGHBOURS];
+            Cells.neighbours(model.getCurrentDotCell(), size, around);
+            for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+                int c = around[k];
+                if (model.getCurrentStatus(Cells.x(c, size), Cells.y(c, size))
+                        == GameModel.AVAILABLE) {
+                    model.select(Cells.x(c, size), Cells.y(c, size));
+                    break;
+                }
+            }
+            final BoardSnapshot after = model.getSnapshot();
+
+            double sweep = best(iterations, new Runnable() {
+                public void run() {
+                    int n = after.getSize();
+                    long changed = 0;
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < n; j++) {
+                            if (after.getCurrentStatus(i, j) != before.getCurrentStatus(i, j)) {
+                                changed++;
+                            }
+                        }
+                    }
+                    sink += changed;
+                }
+            });
+            double diff = best(iterations, new Runnable() {
+                public void run() {
+                    int n = after.getSize();
+                    long changed = 0;
+                    for (int i = 0; i < n; i++) {
+                        int[] row = after.getRow(i);
+                        int[] shown = before.getRow(i);
+                        if (row == shown) {
+                            continue;
+                        }
+                        for (int j = 0; j < n; j++) {
+                            if (row[j] != shown[j]) {
+                                changed++;
+                            }
+                        }
+                    }
+                    sink += changed;
+                }
+            });
+
+            System.out.println(String.format("%6d %14.1f %14.1f %7.1fx %14.1f %14.1f %7.1fx",
+                    size, cellByCell, byRows, cellByCell / byRows, sweep, diff, sweep / diff));
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Helper method: the best average time of a loop over a few rounds
+     *
+     * @return the time of one iteration, in microseconds
+     */
+    private static double best(int iterations, Runnable loop) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                loop.run();
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / iterations;
+            if (round > 0) {
+                best = Math.min(best, micros);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.*;
+import java.util.Random;
+
+/**
+ * The class <b>ScriptedGame</b> plays one game driven by text commands instead of clicks,
+ * without any user interface: it is used for regression scripts and load tests. Commands
+ * are read one per line, from a file or the standard input, and each one gets exactly one
+ * line in reply on the standard output:
+ *
+ * <pre>
+ * select X Y      ok playing|won|lost DOTX DOTY STEPS
+ * undo            ok DOTX DOTY STEPS
+ * redo            ok DOTX DOTY STEPS
+ * reset [SEED]    ok SIZE DOTX DOTY
+ * save [FILE]     ok FILE
+ * board           ok SIZE DOTX DOTY STEPS CELLS
+ * quit            (stops reading)
+ * </pre>
+ *
+ * CELLS is one digit (GameModel.AVAILABLE, SELECTED or DOT) per cell, in Cells order.
+ * Errors are reported as "error MESSAGE". Empty lines and lines starting with '#' are
+ * ignored and get no reply. "reset SEED" starts a game whose board and dot moves only
+ * depend on SEED (and the cache size of the engine, see GameEngine), so that a script
+ * replays identically. "save" writes the game like the Quit button does, to
+ * savedGame.ser by default, so that the GUI resumes it.
+ *
+ * Moves go through the same <b>GameEngine</b> as the GUI, and undo and redo use the same
+ * bounded <b>HistoryStack</b>s.
+ */
+public class ScriptedGame {
+
+    private static final long DOT_SALT = 0x2545F4914F6CDD1DL;
+
+    private final int size;
+    private final String strategyName;
+    private final long timeBudget;
+
+    private GameModel model;
+    private GameEngine engine;
+    private int status;
+    private final HistoryStack undoStack = new HistoryStack(128, 16L * 1024 * 1024);
+    private final HistoryStack redoStack = new HistoryStack(128, 16L * 1024 * 1024);
+
+    /**
+     * Constructor
+     *
+     * @param size the size of the board
+     * @param strategyName the name of the dot strategy (see DotStrategies)
+     * @param timeBudget the time (in milliseconds) the strategy is given per move, 0 for
+     *            no limit
+     * @throws IllegalArgumentException if there is no strategy with that name
+     */
+    public ScriptedGame(int size, String strategyName, long timeBudget) {
+        this.size = size;
+        this.strategyName = strategyName;
+        this.timeBudget = timeBudget;
+        start(new Random());
+    }
+
+    /**
+     * Runs commands until the end of the input or "quit". Replies are only flushed when
+     * no more input is ready, so that piped scripts run at the speed of the engine.
+     *
+     * @param in the commands
+     * @param out the replies
+     * @throws IOException if the input cannot be read or the output written
+     */
+    public void run(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.trim();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            if (command.equals("quit")) {
+                break;
+            }
+            out.write(handle(command));
+            out.write('\n');
+            if (!in.ready()) {
+                out.flush();
+            }
+        }
+        out.flush();
+        undoStack.close();
+        redoStack.close();
+    }
+
+    /**
+     * Runs one command and returns its reply
+     *
+     * @param line the command
+     * @return the reply, without the end of line
+     */
+    public String handle(String line) {
+        String[] words = line.trim().split("\\s+");
+        try {
+            if (words[0].equals("select")) {
+                return select(Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+            }
+            if (words[0].equals("undo")) {
+                return restore(undoStack, redoStack, "undo");
+            }
+            if (words[0].equals("redo")) {
+                return restore(redoStack, undoStack, "redo");
+            }
+            if (words[0].equals("reset")) {
+                start((words.length > 1) ? new Random(Long.parseLong(words[1])) : new Random());
+                Point dot = model.getCurrentDot();
+                return "ok " + size + " " + dot.getX() + " " + dot.getY();
+            }
+            if (words[0].equals("save")) {
+                String file = (words.length > 1) ? words[1] : "savedGame.ser";
+                return save(file);
+            }
+            if (words[0].equals("board")) {
+                return board();
+            }
+            return "error unknown command " + words[0];
+        }
+        catch (ArrayIndexOutOfBoundsException e) {
+            return "error missing argument";
+        }
+        catch (NumberFormatException e) {
+            return "error " + e.getMessage();
+        }
+    }
+
+    /**
+     * Helper method: starts a new game
+     *
+     * @param generator the source of randomness of the board, also used to seed the dot
+     */
+    private void start(Random generator) {
+        long dotSeed = generator.nextLong() ^ DOT_SALT;
+        model = new GameModel(size, generator);
+        engine = new GameEngine(DotStrategies.create(strategyName, new Random(dotSeed)),
+                timeBudget);
+        status = GameEngine.PLAYING;
+        undoStack.clear();
+        redoStack.clear();
+    }
+
+    private String select(int x, int y) {
+        if (status != GameEngine.PLAYING) {
+            return "error game over";
+        }
+        if (x < 0 || x >= size || y < 0 || y >= size
+                || model.getCurrentStatus(x, y) != GameModel.AVAILABLE) {
+            return "error cannot select " + x + " " + y;
+        }
+        undoStack.push(model);
+        int result = engine.play(model, x, y);
+        redoStack.clear();
+        status = result;
+        Point dot = model.getCurrentDot();
+        return "ok " + statusName(result) + " " + dot.getX() + " " + dot.getY() + " "
+                + model.getNumberOfSteps();
+    }
+
+    /**
+     * Helper method: undo (from the undo stack to the redo stack) or redo
+     */
+    private String restore(HistoryStack from, HistoryStack to, String name) {
+        if (from.isEmpty()) {
+            return "error nothing to " + name;
+        }
+        try {
+            GameModel restored = from.pop();
+            to.push(model);
+            model = restored;
+        }
+        catch (IllegalStateException e) {
+            return "error reading history";
+        }
+        // if the restored position is over, the engine finds it again on the next move
+        status = GameEngine.PLAYING;
+        Point dot = model.getCurrentDot();
+        return "ok " + dot.getX() + " " + dot.getY() + " " + model.getNumberOfSteps();
+    }
+
+    private String save(String file) {
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                out.writeObject(model);
+            }
+            finally {
+                out.close();
+            }
+            return "ok " + file;
+        }
+        catch (IOException e) {
+            return "error cannot save to " + file;
+        }
+    }
+
+    private String board() {
+        Point dot = model.getCurrentDot();
+        StringBuilder reply = new StringBuilder(64 + size * size);
+        reply.append("ok ").append(size).append(' ').append(dot.getX()).append(' ')
+                .append(dot.getY()).append(' ').append(model.getNumberOfSteps()).append(' ');
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                reply.append((char) ('0' + model.getCurrentStatus(i, j)));
+            }
+        }
+        return reply.toString();
+    }
+
+    private static String statusName(int status) {
+        switch (status) {
+            case GameEngine.WON:
+                return "won";
+            case GameEngine.LOST:
+                return "lost";
+            default:
+                return "playing";
+        }
+    }
+
+    /**
+     * Runs a script
+     *
+     * @param args the script file ("-" or nothing for the standard input), then the
+     *            size, dot strategy and time budget as for the game
+     * @throws IOException if the script cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String file = (args.length > 0) ? args[0] : "-";
+        int size = (args.length > 1) ? Integer.parseInt(args[1]) : 9;
+        String strategy = (args.length > 2) ? args[2] : DotStrategies.NAMES[0];
+        long timeBudget = (args.length > 3) ? Long.parseLong(args[3]) : 0;
+        if (size < 4) {
+            System.out.println("error size must be at least 4");
+            return;
+        }
+        ScriptedGame game;
+        try {
+            game = new ScriptedGame(size, strategy, timeBudget);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("error " + e.getMessage());
+            return;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                file.equals("-") ? System.in : new FileInputStream(file), "US-ASCII"), 1 << 16);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "US-ASCII"), 1 << 16);
+        try {
+            game.run(in, out);
+        }
+        finally {
+            in.close();
+        }
+    }
+}
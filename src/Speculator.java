@@ -0,0 +1,283 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The class <b>Speculator</b> uses the time the player spends thinking: after each move,
+ * a background thread plays the most likely next selections of the player on copies of
+ * the game and asks the dot strategy for its reply to each. When the player clicks one of
+ * them, the reply is already there and the blue dot moves without searching (see
+ * GameEngine.play).
+ *
+ * The likely selections are the open cells of the shortest escape paths of the blue dot,
+ * nearest to the dot first, then the other open cells around the dot, up to CELLS of
+ * them. On boards of at most SMALL_BOARD x SMALL_BOARD, every open cell is tried. A real
+ * click cancels the speculation: the search under way is the last one.
+ *
+ * The replies come from a strategy of the same kind as the engine's, with its own source
+ * of randomness, so ties may be broken differently than the engine would have. Games with
+ * several blue dots are not speculated on (see MultiDotSearch).
+ *
+ * Turned off with -Dspeculate=false; the number of cells is set with -Dspeculate.cells=N.
+ */
+public class Speculator {
+
+    public static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("speculate", "true"));
+
+    /**
+     * Number of selections tried after each move on large boards
+     */
+    public static final int CELLS = Integer.getInteger("speculate.cells", 48);
+
+    /**
+     * Boards up to this size are tried in full
+     */
+    public static final int SMALL_BOARD = 15;
+
+    private final DotStrategy strategy;
+    private final long timeBudget;
+    private final ExecutorService worker;
+
+    /**
+     * The replies found for the position speculated on, keyed by the selected cell
+     */
+    private final ConcurrentHashMap<Integer, Integer> replies =
+            new ConcurrentHashMap<Integer, Integer>();
+
+    /**
+     * The position speculated on, and the generation of the speculation: it changes with
+     * each new position and each cancellation, and a search of an older generation stops
+     * without publishing its reply. Guarded by this
+     */
+    private long position;
+    private long generation;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Search buffers (worker thread only)
+     */
+    private final EscapeMap map = new EscapeMap();
+    private boolean[] blocked;
+    private boolean[] seen;
+    private boolean[] visited;
+    private int[] queue;
+    private final int[] around = new int[Cells.MAX_NEIGHBOURS];
+
+    /**
+     * Constructor
+     *
+     * @param strategyName the name of the strategy of the blue dot (see DotStrategies)
+     * @param timeBudget the time (in milliseconds) the strategy is given per reply, 0 for
+     *            no limit
+     * @throws IllegalArgumentException if the strategy is unknown
+     */
+    public Speculator(String strategyName, long timeBudget) {
+        strategy = DotStrategies.create(strategyName, new Random());
+        this.timeBudget = timeBudget;
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "speculator");
+                t.setDaemon(true);
+                // the event dispatch thread goes first
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Starts speculating on the next selection of the player, dropping any previous
+     * speculation. Returns right away
+     *
+     * @param snapshot the position the player is to play from
+     */
+    public void start(final BoardSnapshot snapshot) {
+        final long started;
+        synchronized (this) {
+            generation++;
+            started = generation;
+            position = snapshot.getHash();
+            replies.clear();
+        }
+        if (snapshot.getDotCount() > 1
+                || Cells.isOnBorder(snapshot.getCurrentDotCell(), snapshot.getSize())) {
+            return;
+        }
+        worker.execute(new Runnable() {
+            public void run() {
+                speculate(snapshot, started);
+            }
+        });
+    }
+
+    /**
+     * Stops the speculation; the search under way, if any, is the last one. The replies
+     * found so far stay available
+     */
+    public synchronized void cancel() {
+        generation++;
+    }
+
+    /**
+     * Looks up the reply of the blue dot to a selection
+     *
+     * @param hash the hash of the position the selection is made from
+     * @param cell the selected cell (see Cells)
+     * @return the reply found, or GameEngine.UNKNOWN_REPLY
+     */
+    public synchronized int reply(long hash, int cell) {
+        Integer found = (hash == position) ? replies.get(cell) : null;
+        if (found == null) {
+            misses++;
+            return GameEngine.UNKNOWN_REPLY;
+        }
+        hits++;
+        return found;
+    }
+
+    /**
+     * Getter for the number of clicks whose reply was found
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter for the number of clicks whose reply was not found
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Helper method: searches the replies to the likely selections, until a newer
+     * generation starts (worker thread only)
+     */
+    private void speculate(BoardSnapshot snapshot, long started) {
+        if (!isCurrent(started)) {
+            return;
+        }
+        GameModel base = BoardCodec.decode(BoardCodec.encode(snapshot));
+        int size = base.getSize();
+        int[] candidates = candidates(base);
+        for (int cell : candidates) {
+            if (cell == Cells.NONE || !isCurrent(started)) {
+                return;
+            }
+            GameModel after;
+            try {
+                after = (GameModel) base.clone();
+            }
+            catch (CloneNotSupportedException e) {
+                return;
+            }
+            after.select(Cells.x(cell, size), Cells.y(cell, size));
+            long deadline = (timeBudget > 0) ? System.nanoTime() + timeBudget * 1000000L
+                    : Long.MAX_VALUE;
+            int reply = strategy.nextMove(after, deadline);
+            synchronized (this) {
+                if (generation != started) {
+                    return;
+                }
+                replies.put(cell, reply);
+            }
+        }
+    }
+
+    private synchronized boolean isCurrent(long started) {
+        return generation == started;
+    }
+
+    /**
+     * Helper method: the selections to try, most likely first
+     *
+     * @param model the position, the blue dot not on the border
+     * @return the cells, followed by Cells.NONE if there are fewer than the array holds
+     */
+    private int[] candidates(GameModel model) {
+        int size = model.getSize();
+        int cells = size * size;
+        if (blocked == null || blocked.length != cells) {
+            blocked = new boolean[cells];
+            seen = new boolean[cells];
+            visited = new boolean[cells];
+            queue = new int[cells];
+        }
+        int limit = (size <= SMALL_BOARD) ? cells : CELLS;
+        int[] chosen = new int[limit];
+        int count = 0;
+        int dot = model.getCurrentDotCell();
+        Arrays.fill(seen, false);
+        seen[dot] = true;
+
+        // first, the cells of the shortest escape paths, walking down the distances
+        DotStrategies.fillBlocked(model, blocked);
+        blocked[dot] = false;
+        map.compute(blocked, size);
+        int rear = 0;
+        queue[rear++] = dot;
+        for (int front = 0; front < rear && count < limit; front++) {
+            int cell = queue[front];
+            int distance = map.getDistance(cell);
+            if (distance == EscapeMap.UNREACHABLE) {
+                break;
+            }
+            Cells.neighbours(cell, size, around);
+            for (int k = 0; k < Cells.MAX_NEIGHBOURS && count < limit; k++) {
+                int next = around[k];
+                if (seen[next] || blocked[next]) {
+                    continue;
+                }
+                boolean onPath = (distance == 1) ? Cells.isOnBorder(next, size)
+                        : !Cells.isOnBorder(next, size) && map.getDistance(next) == distance - 1;
+                if (onPath) {
+                    seen[next] = true;
+                    chosen[count++] = next;
+                    if (!Cells.isOnBorder(next, size)) {
+                        queue[rear++] = next;
+                    }
+                }
+            }
+        }
+
+        // then the open cells around the dot, nearest first
+        rear = 0;
+        queue[rear++] = dot;
+        Arrays.fill(visited, false);
+        visited[dot] = true;
+        for (int front = 0; front < rear && count < limit; front++) {
+            int cell = queue[front];
+            if (Cells.isOnBorder(cell, size)) {
+                continue;
+            }
+            Cells.neighbours(cell, size, around);
+            for (int k = 0; k < Cells.MAX_NEIGHBOURS && count < limit; k++) {
+                int next = around[k];
+                if (visited[next]) {
+                    continue;
+                }
+                visited[next] = true;
+                queue[rear++] = next;
+                if (!seen[next] && model.getCurrentStatus(Cells.x(next, size),
+                        Cells.y(next, size)) == GameModel.AVAILABLE) {
+                    seen[next] = true;
+                    chosen[count++] = next;
+                }
+            }
+        }
+        if (count < limit) {
+            chosen[count] = Cells.NONE;
+        }
+        return chosen;
+    }
+}
@@ -0,0 +1,67 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * The class <b>StartupMetrics</b> measures how long the game takes to start: the time
+ * from the start of the JVM to the first paint of the window, and to the board being
+ * ready to play. Both are printed once the board is ready, so that measuring them does
+ * not delay the first paint. The goal is a first paint under TARGET_MILLIS on the
+ * default 9x9 board.
+ *
+ * Turned off with -Dstartup.metrics=false.
+ */
+public class StartupMetrics {
+
+    /**
+     * Time to the first paint aimed at on the default board, in milliseconds
+     */
+    public static final long TARGET_MILLIS = 300;
+
+    private static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("startup.metrics", "true"));
+
+    /**
+     * Times of the two events (System.nanoTime()), 0 until they happen
+     */
+    private static long firstPaint;
+    private static long boardReady;
+    private static int boardSize;
+
+    /**
+     * Records the first paint of the window. Later calls are ignored
+     */
+    public static synchronized void firstPaint() {
+        if (firstPaint == 0) {
+            firstPaint = System.nanoTime();
+            report();
+        }
+    }
+
+    /**
+     * Records the board being ready to play. Later calls are ignored
+     *
+     * @param size the size of the board
+     */
+    public static synchronized void boardReady(int size) {
+        if (boardReady == 0) {
+            boardReady = System.nanoTime();
+            boardSize = size;
+            report();
+        }
+    }
+
+    /**
+     * Helper method: prints the two times, since the start of the JVM, once both are known
+     */
+    private static void report() {
+        if (!ENABLED || firstPaint == 0 || boardReady == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        long paintMillis = uptime - (now - firstPaint) / 1000000;
+        long readyMillis = uptime - (now - boardReady) / 1000000;
+        System.out.println("Startup: first paint after " + paintMillis + " ms (target "
+                + TARGET_MILLIS + " ms), " + boardSize + "x" + boardSize
+                + " board ready after " + readyMillis + " ms");
+    }
+}
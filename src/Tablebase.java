@@ -0,0 +1,601 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * The class <b>Tablebase</b> holds the complete solution of the game for a small board,
+ * computed by retrograde analysis, assuming the blue dot plays perfectly. For every
+ * position (the selected cells and the location of the blue dot, the player to move) it
+ * stores either LOSS, when the dot can always escape, or the number of moves the player
+ * needs to circle the dot.
+ *
+ * Only the interior cells and the border cells next to them have an influence on the
+ * game, so a position is indexed by a bitmap of the selected cells among those, times
+ * the number of interior cells, plus the index of the interior cell holding the dot.
+ * Since selecting a cell only ever adds a bit, the value of a position only depends on
+ * positions whose bitmap has one more bit set: the table is filled layer by layer, from
+ * the fullest bitmaps down to the empty one, each layer being split across all cores.
+ *
+ * For a board of size 5 this is 2^23 bitmaps times 9 dot locations, one byte each. A 7x7
+ * board has 47 such cells, far too many to be enumerated; MAX_BITS rejects it.
+ *
+ * The table is stored in a file "tablebase-SIZE.bin". When the file of the size of the
+ * board exists, the game shows a Hint button, which maps the table in memory on its first
+ * click (see forSize) and highlights bestMove.
+ */
+public class Tablebase {
+
+    /**
+     * Value of a position that the player cannot win against a perfect blue dot
+     */
+    public static final int LOSS = 0;
+
+    /**
+     * Largest number of cells that the index can cover
+     */
+    public static final int MAX_BITS = 26;
+
+    /**
+     * Depth of the brute-force search of check, in moves of the player
+     */
+    private static final int BRUTE_FORCE_DEPTH = 3;
+
+    private static final int MAGIC = 0x43544442; // "CTDB"
+
+    /**
+     * Version of the file format; 2 ends the game as soon as the dot cannot reach the
+     * border (version 1 waited until it could not move)
+     */
+    private static final int FORMAT = 2;
+    private static final int HEADER_BYTES = 16;
+
+    /**
+     * Tables already mapped, by board size. null if there is no file for that size
+     */
+    private static final HashMap<Integer, Tablebase> LOADED = new HashMap<Integer, Tablebase>();
+
+    private final int size;
+
+    /**
+     * bitOf[cell] is the bit of that board cell in the bitmap, or -1 if the cell has no
+     * influence on the game. interiorOf[cell] is the index of an interior cell, or -1.
+     */
+    private final int[] bitOf;
+    private final int[] interiorOf;
+    private final int[] interiorCells;
+    private final int bits;
+
+    /**
+     * For each interior cell, the bits of its six neighbours and, for interior
+     * neighbours, their interior index (-1 for border neighbours)
+     */
+    private final int[][] neighbourBit;
+    private final int[][] neighbourInterior;
+
+    /**
+     * The table itself, while generating (values) or once loaded (mapped)
+     */
+    private byte[] values;
+    private ByteBuffer mapped;
+
+    /**
+     * Constructor: computes the layout of the index for a board size
+     *
+     * @param size the size of the board
+     * @throws IllegalArgumentException if the board is too large to be solved
+     */
+    private Tablebase(int size) {
+        this.size = size;
+        int cells = size * size;
+        bitOf = new int[cells];
+        interiorOf = new int[cells];
+        List<Integer> interior = new ArrayList<Integer>();
+        for (int cell = 0; cell < cells; cell++) {
+            bitOf[cell] = -1;
+            interiorOf[cell] = -1;
+            if (!Cells.isOnBorder(cell, size)) {
+                interiorOf[cell] = interior.size();
+                interior.add(cell);
+            }
+        }
+
+        int next = 0;
+        int[] around = new int[Cells.MAX_NEIGHBOURS];
+        for (int cell : interior) {
+            if (bitOf[cell] < 0) {
+                bitOf[cell] = next++;
+            }
+            Cells.neighbours(cell, size, around);
+            for (int n : around) {
+                if (bitOf[n] < 0) {
+                    bitOf[n] = next++;
+                }
+            }
+        }
+        bits = next;
+        if (bits > MAX_BITS || ((long) interior.size() << bits) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A board of size " + size + " has " + bits
+                    + " relevant cells, at most " + MAX_BITS + " can be solved");
+        }
+
+        interiorCells = new int[interior.size()];
+        neighbourBit = new int[interiorCells.length][Cells.MAX_NEIGHBOURS];
+        neighbourInterior = new int[interiorCells.length][Cells.MAX_NEIGHBOURS];
+        for (int i = 0; i < interiorCells.length; i++) {
+            interiorCells[i] = interior.get(i);
+            Cells.neighbours(interiorCells[i], size, around);
+            for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+                neighbourBit[i][k] = bitOf[around[k]];
+                neighbourInterior[i][k] = interiorOf[around[k]];
+            }
+        }
+    }
+
+    /**
+     * Returns the tablebase for a board size, mapping its file on the first call
+     *
+     * @param size the size of the board
+     * @return the tablebase, or null if there is no (valid) file for that size
+     */
+    public static synchronized Tablebase forSize(int size) {
+        if (!LOADED.containsKey(size)) {
+            Tablebase table = null;
+            File file = fileFor(size);
+            if (file.exists()) {
+                try {
+                    table = load(size, file);
+                }
+                catch (IOException e) {
+                    System.err.println("Could not load " + file + ": " + e.getMessage());
+                }
+            }
+            LOADED.put(size, table);
+        }
+        return LOADED.get(size);
+    }
+
+    /**
+     * The file holding the tablebase of a board size
+     *
+     * @param size the size of the board
+     * @return the file, in the working directory
+     */
+    public static File fileFor(int size) {
+        return new File("tablebase-" + size + ".bin");
+    }
+
+    /**
+     * Maps a tablebase file in memory
+     *
+     * @param size the size of the board
+     * @param file the file written by generate
+     * @return the tablebase
+     * @throws IOException if the file cannot be read or is not a tablebase for that size
+     */
+    public static Tablebase load(int size, File file) throws IOException {
+        Tablebase table = new Tablebase(size);
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a tablebase");
+            }
+            if (in.readInt() != FORMAT) {
+                throw new IOException("Outdated tablebase, run java Tablebase " + size);
+            }
+            if (in.readInt() != size || in.readInt() != table.bits) {
+                throw new IOException("Not a tablebase for a board of size " + size);
+            }
+            FileChannel channel = in.getChannel();
+            long length = (long) table.interiorCells.length << table.bits;
+            if (channel.size() != HEADER_BYTES + length) {
+                throw new IOException("Truncated tablebase");
+            }
+            // the mapping stays valid once the file is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, length);
+            table.mapped = buffer;
+        }
+        finally {
+            in.close();
+        }
+        return table;
+    }
+
+    /**
+     * Solves a board size and writes the table to a file
+     *
+     * @param size the size of the board
+     * @param file the file to write
+     * @param threads the number of threads to use
+     * @throws IOException if the file cannot be written
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static void generate(int size, File file, int threads)
+            throws IOException, InterruptedException {
+        final Tablebase table = new Tablebase(size);
+        table.values = new byte[table.interiorCells.length << table.bits];
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            final int masks = 1 << table.bits;
+            final int chunk = Math.max(1 << 12, masks / (threads * 8));
+            for (int layer = table.bits; layer >= 0; layer--) {
+                final int popCount = layer;
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for (int start = 0; start < masks; start += chunk) {
+                    final int from = start;
+                    final int to = Math.min(masks, start + chunk);
+                    tasks.add(new Callable<Void>() {
+                        public Void call() {
+                            for (int mask = from; mask < to; mask++) {
+                                if (Integer.bitCount(mask) == popCount) {
+                                    table.solve(mask);
+                                }
+                            }
+                            return null;
+                        }
+                    });
+                }
+                for (Future<Void> done : pool.invokeAll(tasks)) {
+                    try {
+                        done.get();
+                    }
+                    catch (ExecutionException e) {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(size);
+            out.writeInt(table.bits);
+            out.write(table.values);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Computes the value of every dot location for one bitmap (generation only). All the
+     * bitmaps with one more bit must already be solved.
+     *
+     * @param mask the bitmap of selected cells
+     */
+    private void solve(int mask) {
+        int all = (1 << bits) - 1;
+        for (int dot = 0; dot < interiorCells.length; dot++) {
+            int dotBit = 1 << bitOf[interiorCells[dot]];
+            if ((mask & dotBit) != 0) {
+                continue;
+            }
+            int best = LOSS;
+            int free = all & ~mask & ~dotBit;
+            while (free != 0) {
+                int move = free & -free;
+                free &= free - 1;
+                int reply = replyValue(mask | move, dot, values);
+                if (reply != LOSS && (best == LOSS || reply < best)) {
+                    best = reply;
+                }
+            }
+            values[mask * interiorCells.length + dot] = (byte) best;
+        }
+    }
+
+    /**
+     * Value of a position right after the player moved, the blue dot to move. As in
+     * GameEngine.play, the player has won once the dot cannot reach the border any more,
+     * even if it still has room to move; otherwise the dot picks the reply that is the
+     * worst for the player
+     *
+     * @param mask the bitmap of selected cells, the player's move included
+     * @param dot the interior index of the blue dot
+     * @param table the values, either the array being generated or null to use the mapped file
+     * @return LOSS, or the number of moves for the player to win, this one included
+     */
+    private int replyValue(int mask, int dot, byte[] table) {
+        if (!canEscape(mask, dot)) {
+            return 1;
+        }
+        int worst = 1;
+        for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+            if ((mask & (1 << neighbourBit[dot][k])) != 0) {
+                continue;
+            }
+            int next = neighbourInterior[dot][k];
+            if (next < 0) {
+                // the dot reaches the border and will exit
+                return LOSS;
+            }
+            int index = mask * interiorCells.length + next;
+            int value = (table != null) ? table[index] : mapped.get(index);
+            if (value == LOSS) {
+                return LOSS;
+            }
+            worst = Math.max(worst, value + 1);
+        }
+        return worst;
+    }
+
+    /**
+     * Helper method: whether the blue dot can reach a free border cell, spreading from
+     * its cell through the free interior cells (a bitmap of interior indices)
+     *
+     * @param mask the bitmap of selected cells
+     * @param dot the interior index of the blue dot
+     * @return true if a free border cell is reachable
+     */
+    private boolean canEscape(int mask, int dot) {
+        int reached = 1 << dot;
+        int expanded = 0;
+        while (reached != expanded) {
+            int todo = reached & ~expanded;
+            expanded = reached;
+            while (todo != 0) {
+                int cell = Integer.numberOfTrailingZeros(todo);
+                todo &= todo - 1;
+                for (int k = 0; k < Cells.MAX_NEIGHBOURS; k++) {
+                    if ((mask & (1 << neighbourBit[cell][k])) != 0) {
+                        continue;
+                    }
+                    int next = neighbourInterior[cell][k];
+                    if (next < 0) {
+                        return true;
+                    }
+                    reached |= 1 << next;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Looks up the value of a position, the player to move
+     *
+     * @param model the position, on a board of the size of this tablebase
+     * @return LOSS, or the number of moves the player needs to win against a perfect dot
+     */
+    public int lookup(GameModel model) {
+        int dot = interiorOf[model.getCurrentDotCell()];
+        if (dot < 0) {
+            return LOSS;
+        }
+        return mapped.get(maskOf(model) * interiorCells.length + dot);
+    }
+
+    /**
+     * Finds the best move for the player
+     *
+     * @param model the position, on a board of the size of this tablebase
+     * @return the cell (see Cells) to select to win as fast as possible, or Cells.NONE
+     * if the position is lost against a perfect dot
+     */
+    public int bestMove(GameModel model) {
+        int dot = interiorOf[model.getCurrentDotCell()];
+        if (dot < 0) {
+            return Cells.NONE;
+        }
+        int mask = maskOf(model);
+        int dotBit = 1 << bitOf[interiorCells[dot]];
+        int best = LOSS;
+        int bestCell = Cells.NONE;
+        for (int cell = 0; cell < bitOf.length; cell++) {
+            int move = (bitOf[cell] < 0) ? 0 : 1 << bitOf[cell];
+            if (move == 0 || move == dotBit || (mask & move) != 0) {
+                continue;
+            }
+            int reply = replyValue(mask | move, dot, null);
+            if (reply != LOSS && (best == LOSS || reply < best)) {
+                best = reply;
+                bestCell = cell;
+            }
+        }
+        return bestCell;
+    }
+
+    /**
+     * Getter for the size of the board solved by this tablebase
+     *
+     * @return the size of the board
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Helper method: the bitmap of the selected relevant cells of a model
+     */
+    private int maskOf(GameModel model) {
+        int mask = 0;
+        for (int cell = 0; cell < bitOf.length; cell++) {
+            if (bitOf[cell] >= 0 && model.getCurrentStatus(Cells.x(cell, size),
+                    Cells.y(cell, size)) == GameModel.SELECTED) {
+                mask |= 1 << bitOf[cell];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Checks the table against the rules of the game on random positions (the player to
+     * move, the blue dot able to reach the border):
+     * - the value of a position won in at most BRUTE_FORCE_DEPTH moves is that of a
+     *   brute-force search of the game tree, and no other position is won that fast,
+     * - the moves scored as winning at once are those GameEngine.play scores WON,
+     * - playing bestMove against GameEngine wins within the value of the position.
+     *
+     * @param positions the number of positions to check
+     * @param random the source of the positions
+     * @return the number of positions that failed a check
+     */
+    public int check(int positions, Random random) {
+        GameEngine engine = new GameEngine(DotStrategies.create(DotStrategies.NAMES[0],
+                random), 0, 0);
+        int cells = size * size;
+        int failed = 0;
+        for (int n = 0; n < positions; n++) {
+            boolean[] selected = new boolean[cells];
+            double density = 0.1 + 0.4 * random.nextDouble();
+            for (int cell = 0; cell < cells; cell++) {
+                selected[cell] = random.nextDouble() < density;
+            }
+            int dot = interiorCells[random.nextInt(interiorCells.length)];
+            selected[dot] = false;
+            if (!reachesBorder(selected, dot)) {
+                n--;
+                continue;
+            }
+            GameModel model = position(selected, dot);
+            int value = lookup(model);
+            boolean ok = true;
+
+            int depth = (value == LOSS || value > BRUTE_FORCE_DEPTH) ? BRUTE_FORCE_DEPTH : value;
+            ok &= winsIn(selected, dot, depth) == (value != LOSS && value <= BRUTE_FORCE_DEPTH);
+            if (value > 1 && value <= BRUTE_FORCE_DEPTH) {
+                ok &= !winsIn(selected, dot, value - 1);
+            }
+
+            int mask = maskOf(model);
+            int inside = interiorOf[dot];
+            for (int cell = 0; cell < cells; cell++) {
+                if (selected[cell] || cell == dot || bitOf[cell] < 0) {
+                    continue;
+                }
+                boolean won = engine.play(position(selected, dot), Cells.x(cell, size),
+                        Cells.y(cell, size)) == GameEngine.WON;
+                ok &= won == (replyValue(mask | (1 << bitOf[cell]), inside, null) == 1);
+            }
+
+            if (value != LOSS) {
+                GameModel game = position(selected, dot);
+                int result = GameEngine.PLAYING;
+                for (int move = 0; move < value && result == GameEngine.PLAYING; move++) {
+                    int cell = bestMove(game);
+                    result = (cell == Cells.NONE) ? GameEngine.LOST
+                            : engine.play(game, Cells.x(cell, size), Cells.y(cell, size));
+                }
+                ok &= result == GameEngine.WON;
+            }
+            if (!ok) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Helper method: a model of a position of check
+     */
+    private GameModel position(boolean[] selected, int dot) {
+        int[][] board = new int[size][size];
+        for (int cell = 0; cell < selected.length; cell++) {
+            if (selected[cell]) {
+                board[Cells.x(cell, size)][Cells.y(cell, size)] = GameModel.SELECTED;
+            }
+        }
+        board[Cells.x(dot, size)][Cells.y(dot, size)] = GameModel.DOT;
+        return new GameModel(size, board, Cells.x(dot, size), Cells.y(dot, size), 0);
+    }
+
+    /**
+     * Helper method: whether the player, to move, can circle the blue dot within depth
+     * moves whatever the dot does, searching the whole game tree (check only)
+     */
+    private boolean winsIn(boolean[] selected, int dot, int depth) {
+        int[] around = new int[Cells.MAX_NEIGHBOURS];
+        for (int cell = 0; cell < selected.length; cell++) {
+            if (selected[cell] || cell == dot) {
+                continue;
+            }
+            selected[cell] = true;
+            boolean wins = !reachesBorder(selected, dot);
+            if (!wins && depth > 1) {
+                wins = true;
+                Cells.neighbours(dot, size, around);
+                for (int k = 0; k < Cells.MAX_NEIGHBOURS && wins; k++) {
+                    int next = around[k];
+                    if (!selected[next]) {
+                        wins = !Cells.isOnBorder(next, size)
+                                && winsIn(selected, next, depth - 1);
+                    }
+                }
+            }
+            selected[cell] = false;
+            if (wins) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper method: whether the blue dot can reach a free border cell (check only)
+     */
+    private boolean reachesBorder(boolean[] selected, int dot) {
+        boolean[] seen = new boolean[selected.length];
+        int[] queue = new int[selected.length];
+        int[] around = new int[Cells.MAX_NEIGHBOURS];
+        int rear = 0;
+        queue[rear++] = dot;
+        seen[dot] = true;
+        for (int front = 0; front < rear; front++) {
+            int cell = queue[front];
+            if (Cells.isOnBorder(cell, size)) {
+                return true;
+            }
+            Cells.neighbours(cell, size, around);
+            for (int next : around) {
+                if (!seen[next] && !selected[next]) {
+                    seen[next] = true;
+                    queue[rear++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates the tablebase of a board size in the working directory, or checks it
+     * (see check)
+     *
+     * @param args the size of the board, and optionally the number of threads; or the
+     *            size, "check" and optionally the number of positions to check
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java Tablebase size [threads]");
+            System.out.println("       java Tablebase size check [positions]");
+            return;
+        }
+        int size = Integer.parseInt(args[0]);
+        if (args.length > 1 && args[1].equals("check")) {
+            int positions = (args.length > 2) ? Integer.parseInt(args[2]) : 200;
+            Tablebase table = load(size, fileFor(size));
+            long start = System.currentTimeMillis();
+            int failed = table.check(positions, new Random());
+            System.out.println(failed + " of " + positions + " positions failed, in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            System.exit(failed == 0 ? 0 : 1);
+        }
+        int threads = (args.length > 1) ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        long start = System.currentTimeMillis();
+        generate(size, fileFor(size), threads);
+        System.out.println("Wrote " + fileFor(size) + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -0,0 +1,340 @@
+import java.io.*;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The class <b>Tournament</b> pits every <b>PlayerStrategy</b> against every
+ * <b>DotStrategy</b> over many random boards, to choose the default settings of the game.
+ *
+ * Game number g of every pairing is played from the same board, and the player and the
+ * dot draw their random choices from the same seeds, all derived from the tournament seed
+ * and g: the pairings are compared on exactly the same games, and a tournament can be
+ * replayed. The games of a pairing are split recursively over a ForkJoinPool; each task
+ * only adds up counters, so the memory used does not depend on the number of games.
+ *
+ * Each pairing gives one line of CSV, written as soon as it is done:
+ * player,dot,size,games,wins,win_rate,ci_low,ci_high,avg_moves,player_ms_per_move,dot_ms_per_move
+ * where [ci_low, ci_high] is the 95% Wilson confidence interval of the win rate. A summary
+ * table is printed at the end.
+ *
+ * With -Dexport.file=FILE, every move of every game is also appended to FILE by a
+ * <b>GameRecordWriter</b> (deflated with -Dexport.deflate=true), the seed column being
+ * the seed of the game.
+ */
+public class Tournament {
+
+    /**
+     * Number of games below which a task plays its games instead of splitting them
+     */
+    private static final int GAMES_PER_TASK = 64;
+
+    /**
+     * z value of a 95% confidence interval
+     */
+    private static final double Z = 1.96;
+
+    private static final long PLAYER_SALT = 0x5DEECE66DL;
+    private static final long DOT_SALT = 0x2545F4914F6CDD1DL;
+
+    private static final String CSV_HEADER = "player,dot,size,games,wins,win_rate,ci_low,"
+            + "ci_high,avg_moves,player_ms_per_move,dot_ms_per_move";
+
+    /**
+     * The totals of a set of games
+     */
+    public static class Score {
+        private long games;
+        private long wins;
+        private long moves;
+        private long playerNanos;
+        private long dotNanos;
+
+        private void add(Score other) {
+            games += other.games;
+            wins += other.wins;
+            moves += other.moves;
+            playerNanos += other.playerNanos;
+            dotNanos += other.dotNanos;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getWins() {
+            return wins;
+        }
+
+        public double getWinRate() {
+            return (games == 0) ? 0 : (double) wins / games;
+        }
+
+        /**
+         * Getter for the bounds of the 95% Wilson score interval of the win rate
+         *
+         * @return the lower and upper bounds
+         */
+        public double[] getConfidenceInterval() {
+            if (games == 0) {
+                return new double[] {0, 1};
+            }
+            double n = games;
+            double p = getWinRate();
+            double denominator = 1 + Z * Z / n;
+            double centre = (p + Z * Z / (2 * n)) / denominator;
+            double half = Z * Math.sqrt(p * (1 - p) / n + Z * Z / (4 * n * n)) / denominator;
+            return new double[] {Math.max(0, centre - half), Math.min(1, centre + half)};
+        }
+
+        public double getAverageMoves() {
+            return (games == 0) ? 0 : (double) moves / games;
+        }
+
+        public double getPlayerMillisPerMove() {
+            return (moves == 0) ? 0 : playerNanos / 1e6 / moves;
+        }
+
+        public double getDotMillisPerMove() {
+            return (moves == 0) ? 0 : dotNanos / 1e6 / moves;
+        }
+    }
+
+    /**
+     * Plays the games [from, to) of a pairing, splitting them in halves while there are
+     * more than GAMES_PER_TASK
+     */
+    private static class Match extends RecursiveTask<Score> {
+        private static final long serialVersionUID = 1L;
+
+        private final String player;
+        private final String dot;
+        private final int size;
+        private final long seed;
+        private final long from;
+        private final long to;
+        private final GameRecordWriter records;
+
+        private Match(String player, String dot, int size, long seed, long from, long to,
+                GameRecordWriter records) {
+            this.player = player;
+            this.dot = dot;
+            this.size = size;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+            this.records = records;
+        }
+
+        @Override
+        protected Score compute() {
+            if (to - from > GAMES_PER_TASK) {
+                long middle = (from + to) >>> 1;
+                Match left = new Match(player, dot, size, seed, from, middle, records);
+                left.fork();
+                Score score = new Match(player, dot, size, seed, middle, to, records).compute();
+                score.add(left.join());
+                return score;
+            }
+            Score score = new Score();
+            for (long g = from; g < to; g++) {
+                playGame(player, dot, size, gameSeed(seed, g), score, records);
+            }
+            return score;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final GameRecordWriter records;
+
+    /**
+     * Constructor
+     *
+     * @param parallelism the number of threads playing games
+     */
+    public Tournament(int parallelism) {
+        this(parallelism, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param parallelism the number of threads playing games
+     * @param records where to record every move played, null for nowhere
+     */
+    public Tournament(int parallelism, GameRecordWriter records) {
+        pool = new ForkJoinPool(parallelism);
+        this.records = records;
+    }
+
+    /**
+     * Plays the games of one pairing
+     *
+     * @param player the name of the player strategy (see PlayerStrategies)
+     * @param dot the name of the dot strategy (see DotStrategies)
+     * @param size the size of the boards
+     * @param games the number of games
+     * @param seed the seed of the tournament
+     * @return the totals of the games
+     */
+    public Score play(String player, String dot, int size, long games, long seed) {
+        // fail now rather than in a worker thread
+        PlayerStrategies.create(player, new Random());
+        DotStrategies.create(dot, new Random());
+        return pool.invoke(new Match(player, dot, size, seed, 0, games, records));
+    }
+
+    /**
+     * Releases the threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Plays one game and adds it to a score
+     *
+     * @param playerName the name of the player strategy
+     * @param dotName the name of the dot strategy
+     * @param size the size of the board
+     * @param seed the seed of the game
+     * @param score the totals to update
+     * @param records where to record the moves, or null
+     */
+    private static void playGame(String playerName, String dotName, int size, long seed,
+            Score score, GameRecordWriter records) {
+        GameModel model = new GameModel(size, new Random(seed));
+        PlayerStrategy player = PlayerStrategies.create(playerName, new Random(seed ^ PLAYER_SALT));
+        GameEngine engine = new GameEngine(DotStrategies.create(dotName,
+                new Random(seed ^ DOT_SALT)), 0);
+
+        int status = GameEngine.PLAYING;
+        while (status == GameEngine.PLAYING) {
+            long start = System.nanoTime();
+            int cell = player.nextMove(model, Long.MAX_VALUE);
+            long chosen = System.nanoTime();
+            if (cell == Cells.NONE) {
+                status = GameEngine.LOST;
+                break;
+            }
+            status = engine.play(model, Cells.x(cell, size), Cells.y(cell, size));
+            if (status == GameEngine.ILLEGAL) {
+                throw new IllegalStateException(playerName + " selected a dot that is not "
+                        + "available: " + Cells.x(cell, size) + " " + Cells.y(cell, size));
+            }
+            score.playerNanos += chosen - start;
+            score.dotNanos += System.nanoTime() - chosen;
+            score.moves++;
+            if (records != null) {
+                try {
+                    records.record(seed, model, cell, status);
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException("Error writing game records", e);
+                }
+            }
+        }
+        score.games++;
+        if (status == GameEngine.WON) {
+            score.wins++;
+        }
+    }
+
+    /**
+     * Helper method: the seed of game number g (splitmix64 of the tournament seed and g)
+     */
+    private static long gameSeed(long seed, long g) {
+        long z = seed + (g + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Helper method: a pairing formatted as a line of CSV
+     */
+    private static String csvLine(String player, String dot, int size, Score score) {
+        double[] ci = score.getConfidenceInterval();
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.6f,%.6f,%.6f,%.3f,%.6f,%.6f",
+                player, dot, size, score.getGames(), score.getWins(), score.getWinRate(),
+                ci[0], ci[1], score.getAverageMoves(), score.getPlayerMillisPerMove(),
+                score.getDotMillisPerMove());
+    }
+
+    /**
+     * Runs a tournament
+     *
+     * @param args the size of the boards, the number of games per pairing, and optionally
+     *            the player strategies and the dot strategies (comma separated, all of
+     *            them by default), the seed and the CSV file (standard output by default)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java Tournament size games [players] [dots] [seed] "
+                    + "[file.csv]");
+            System.out.println("players: " + join(PlayerStrategies.NAMES) + ", dots: "
+                    + join(DotStrategies.NAMES));
+            return;
+        }
+        int size = Integer.parseInt(args[0]);
+        long games = Long.parseLong(args[1]);
+        String[] players = (args.length > 2) ? args[2].split(",") : PlayerStrategies.NAMES;
+        String[] dots = (args.length > 3) ? args[3].split(",") : DotStrategies.NAMES;
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : 1;
+        PrintStream csv = (args.length > 5)
+                ? new PrintStream(new FileOutputStream(args[5]), true, "US-ASCII") : System.out;
+
+        String export = System.getProperty("export.file");
+        GameRecordWriter records = (export == null) ? null
+                : new GameRecordWriter(new File(export), Boolean.getBoolean("export.deflate"));
+        Tournament tournament = new Tournament(Runtime.getRuntime().availableProcessors(),
+                records);
+        Score[][] scores = new Score[players.length][dots.length];
+        try {
+            csv.println(CSV_HEADER);
+            for (int p = 0; p < players.length; p++) {
+                for (int d = 0; d < dots.length; d++) {
+                    scores[p][d] = tournament.play(players[p], dots[d], size, games, seed);
+                    csv.println(csvLine(players[p], dots[d], size, scores[p][d]));
+                    csv.flush();
+                }
+            }
+        }
+        finally {
+            tournament.shutdown();
+            if (records != null) {
+                records.close();
+            }
+            if (csv != System.out) {
+                csv.close();
+            }
+        }
+
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-10s %-10s %10s %22s %9s %9s %9s",
+                "player", "dot", "games", "win rate (95% CI)", "moves", "player ms", "dot ms"));
+        for (int p = 0; p < players.length; p++) {
+            for (int d = 0; d < dots.length; d++) {
+                Score score = scores[p][d];
+                double[] ci = score.getConfidenceInterval();
+                System.out.println(String.format(Locale.ROOT,
+                        "%-10s %-10s %10d %6.2f%% [%5.2f, %5.2f] %9.2f %9.4f %9.4f",
+                        players[p], dots[d], score.getGames(), 100 * score.getWinRate(),
+                        100 * ci[0], 100 * ci[1], score.getAverageMoves(),
+                        score.getPlayerMillisPerMove(), score.getDotMillisPerMove()));
+            }
+        }
+    }
+
+    private static String join(String[] names) {
+        StringBuilder joined = new StringBuilder();
+        for (String name : names) {
+            if (joined.length() > 0) {
+                joined.append(", ");
+            }
+            joined.append(name);
+        }
+        return joined.toString();
+    }
+}